@@ -0,0 +1,42 @@
+package com.globus.modul26.controller;
+
+import com.globus.modul26.model.BenchmarkData;
+import com.globus.modul26.service.SecurityLogEnricher;
+import com.globus.modul26.util.UserAgentClassifier;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestParsingBenchmark {
+
+    private final UserAgentClassifier classifier = new UserAgentClassifier(10_000);
+    private int next;
+
+    private String userAgent() {
+        String[] agents = BenchmarkData.USER_AGENTS;
+        return agents[next++ % agents.length];
+    }
+
+    @Benchmark
+    public void classifyUserAgent(Blackhole bh) {
+        bh.consume(classifier.classify(userAgent()));
+    }
+
+    // Без кэша строк: стоимость одного прохода автомата
+    @Benchmark
+    public void parseUserAgentUncached(Blackhole bh) {
+        bh.consume(classifier.parse(userAgent()));
+    }
+
+    @Benchmark
+    public String maskIp() {
+        return SecurityLogEnricher.maskIp("91.207.14.15");
+    }
+}
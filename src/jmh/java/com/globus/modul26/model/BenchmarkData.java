@@ -0,0 +1,64 @@
+package com.globus.modul26.model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Синтетическая история событий для бенчмарков
+public final class BenchmarkData {
+
+    public static final String[] USER_AGENTS = {
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/124.0.0.0 Safari/537.36",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 14_4) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.4 Safari/605.1.15",
+            "Mozilla/5.0 (X11; Linux x86_64; rv:125.0) Gecko/20100101 Firefox/125.0",
+            "Mozilla/5.0 (Linux; Android 14; Pixel 8) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/124.0.0.0 Mobile Safari/537.36",
+            "Mozilla/5.0 (iPhone; CPU iPhone OS 17_4 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.4 Mobile/15E148 Safari/604.1",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/124.0.0.0 Safari/537.36 Edg/124.0.2478.67",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/124.0.0.0 Safari/537.36 OPR/109.0.0.0"
+    };
+
+    private static final String[][] GEO = {
+            {"RUS", "Moscow"}, {"RUS", "Kazan"}, {"DEU", "Berlin"}, {"KAZ", "Almaty"}, {"USA", "Boston"}
+    };
+
+    private static final String[] EVENT_TYPES = {"LOGIN", "LOGIN_ATTEMPT", "PASSWORD_CHANGE", "TRANSFER", "PROFILE_VIEW"};
+
+    private BenchmarkData() {}
+
+    public static List<SecurityLog> history(long userId, int size, long seed) {
+        Random random = new Random(seed);
+        List<SecurityLog> logs = new ArrayList<>(size);
+        LocalDateTime start = LocalDateTime.now().minusDays(365);
+        for (int i = 0; i < size; i++) {
+            logs.add(event(userId, random, start.plusMinutes(i * 5L)));
+        }
+        return logs;
+    }
+
+    public static SecurityLog event(long userId, Random random, LocalDateTime at) {
+        String[] geo = GEO[random.nextInt(GEO.length)];
+        String ua = USER_AGENTS[random.nextInt(USER_AGENTS.length)];
+        // Горячие ключи - в типизированных полях, в metadata только свободные
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("country_name", geo[0]);
+        metadata.put("device_class", "desktop");
+        String eventType = EVENT_TYPES[random.nextInt(EVENT_TYPES.length)];
+        return SecurityLog.builder()
+                .userId(userId)
+                .eventType(eventType)
+                .ipAddress("10." + random.nextInt(4) + "**.***." + random.nextInt(64))
+                .deviceInfo(ua)
+                .createdAt(at)
+                .country(geo[0])
+                .city(geo[1])
+                .platform(random.nextBoolean() ? "Windows" : "Mac")
+                .browser(random.nextBoolean() ? "Chrome" : "Safari")
+                .metadata(metadata)
+                .biometryUsed(random.nextInt(10) == 0)
+                .isSuspicious("LOGIN_ATTEMPT".equals(eventType) && random.nextInt(4) == 0)
+                .build();
+    }
+}
@@ -0,0 +1,42 @@
+package com.globus.modul26.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonbConverterBenchmark {
+
+    private final JsonbConverter converter = new JsonbConverter();
+    private Map<String, Object> metadata;
+    private Object dbValue;
+
+    @Setup
+    public void setup() {
+        metadata = BenchmarkData.event(1L, new Random(7), LocalDateTime.now()).getMetadata();
+        dbValue = converter.convertToDatabaseColumn(metadata);
+    }
+
+    @Benchmark
+    public Object write() {
+        return converter.convertToDatabaseColumn(metadata);
+    }
+
+    @Benchmark
+    public Map<String, Object> read() {
+        return converter.convertToEntityAttribute(dbValue);
+    }
+
+    @Benchmark
+    public Map<String, Object> roundTrip() {
+        return converter.convertToEntityAttribute(converter.convertToDatabaseColumn(metadata));
+    }
+}
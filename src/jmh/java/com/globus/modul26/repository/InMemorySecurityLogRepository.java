@@ -0,0 +1,92 @@
+package com.globus.modul26.repository;
+
+import com.globus.modul26.model.SecurityLog;
+import org.springframework.data.domain.Pageable;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * SecurityLogRepository в памяти для бенчмарков: реализует через Proxy только
+ * методы, которые зовёт детектор; остальные бросают UnsupportedOperationException.
+ * latencyMicros имитирует сетевую задержку БД на каждом find*.
+ */
+public final class InMemorySecurityLogRepository {
+
+    private final List<SecurityLog> rows = new CopyOnWriteArrayList<>();
+    private final AtomicInteger ids = new AtomicInteger();
+    private final long latencyNanos;
+
+    public static SecurityLogRepository create(List<SecurityLog> history) {
+        return create(history, 0);
+    }
+
+    public static SecurityLogRepository create(List<SecurityLog> history, long latencyMicros) {
+        return new InMemorySecurityLogRepository(history, latencyMicros).proxy();
+    }
+
+    private InMemorySecurityLogRepository(List<SecurityLog> history, long latencyMicros) {
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        history.forEach(this::save);
+    }
+
+    private SecurityLogRepository proxy() {
+        return (SecurityLogRepository) Proxy.newProxyInstance(
+                SecurityLogRepository.class.getClassLoader(),
+                new Class<?>[]{SecurityLogRepository.class},
+                (proxy, method, args) -> {
+                    if (latencyNanos > 0 && method.getName().startsWith("find")) {
+                        LockSupport.parkNanos(latencyNanos);
+                    }
+                    return dispatch(proxy, method.getName(), args);
+                });
+    }
+
+    private Object dispatch(Object proxy, String method, Object[] args) {
+        return switch (method) {
+            case "findByUserId" -> byUser((Long) args[0]).toList();
+            case "findByUserIdAndIdGreaterThan" -> byUser((Long) args[0])
+                    .filter(l -> l.getId() != null && l.getId() > (Integer) args[1]).toList();
+            case "findByUserIdAndBiometryUsed" -> byUser((Long) args[0])
+                    .filter(l -> Objects.equals(l.getBiometryUsed(), args[1])).toList();
+            case "findByUserIdAndEventTypeAndCreatedAtAfter" -> byUser((Long) args[0])
+                    .filter(l -> args[1].equals(l.getEventType()))
+                    .filter(l -> l.getCreatedAt().isAfter((LocalDateTime) args[2])).toList();
+            case "findByUserIdAndEventTypeAndCreatedAtAfterOrderByCreatedAtDesc" -> byUser((Long) args[0])
+                    .filter(l -> args[1].equals(l.getEventType()))
+                    .filter(l -> l.getCreatedAt().isAfter((LocalDateTime) args[2]))
+                    .sorted(Comparator.comparing(SecurityLog::getCreatedAt).reversed())
+                    .limit(((Pageable) args[3]).getPageSize()).toList();
+            case "findTop3ByUserIdAndEventTypeOrderByCreatedAtDesc" -> byUser((Long) args[0])
+                    .filter(l -> args[1].equals(l.getEventType()))
+                    .sorted(Comparator.comparing(SecurityLog::getCreatedAt).reversed())
+                    .limit(3).toList();
+            case "save" -> save((SecurityLog) args[0]);
+            case "toString" -> "InMemorySecurityLogRepository(" + rows.size() + " rows)";
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            default -> throw new UnsupportedOperationException(method);
+        };
+    }
+
+    private Stream<SecurityLog> byUser(Long userId) {
+        return new ArrayList<>(rows).stream().filter(l -> userId.equals(l.getUserId()));
+    }
+
+    private SecurityLog save(SecurityLog log) {
+        if (log.getId() == null) {
+            log.setId(ids.incrementAndGet());
+        }
+        rows.add(log);
+        return log;
+    }
+}
@@ -0,0 +1,65 @@
+package com.globus.modul26.service;
+
+import com.globus.modul26.model.BenchmarkData;
+import com.globus.modul26.model.SecurityLog;
+import com.globus.modul26.repository.InMemorySecurityLogRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * isSuspicious на истории разного размера. cached=false сбрасывает кэши
+ * перед каждой оценкой - это стоимость первого события пользователя.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DetectionBenchmark {
+
+    private static final long USER_ID = 42L;
+
+    @Param({"100", "10000"})
+    public int historySize;
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private DetectionFixture fixture;
+    private SecurityLog event;
+
+    @Setup
+    public void setup() {
+        List<SecurityLog> history = BenchmarkData.history(USER_ID, historySize, 1L);
+        fixture = new DetectionFixture(InMemorySecurityLogRepository.create(history));
+
+        // Событие с уже известными IP/устройством/гео: проверяются все сигналы
+        SecurityLog last = history.get(history.size() - 1);
+        event = SecurityLog.builder()
+                .userId(USER_ID)
+                .eventType("TRANSFER")
+                .ipAddress(last.getIpAddress())
+                .deviceInfo(last.getDeviceInfo())
+                .country(last.getCountry())
+                .city(last.getCity())
+                .platform(last.getPlatform())
+                .browser(last.getBrowser())
+                .metadata(new HashMap<>(last.getMetadata()))
+                .biometryUsed(false)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    @Benchmark
+    public boolean isSuspicious() {
+        if (!cached) {
+            fixture.invalidate(USER_ID);
+        }
+        return fixture.service.isSuspicious(event);
+    }
+}
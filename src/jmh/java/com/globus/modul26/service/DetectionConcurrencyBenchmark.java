@@ -0,0 +1,68 @@
+package com.globus.modul26.service;
+
+import com.globus.modul26.model.BenchmarkData;
+import com.globus.modul26.model.SecurityLog;
+import com.globus.modul26.repository.InMemorySecurityLogRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка оценки события при промахе кэшей: sequential против concurrent.
+ * Каждый find* в репозитории ждёт latencyMicros, как сетевой запрос к БД.
+ * Событие не срабатывает ни на одном правиле, поэтому грузятся все данные.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DetectionConcurrencyBenchmark {
+
+    private static final long USER_ID = 42L;
+
+    @Param({"sequential", "concurrent"})
+    public String mode;
+
+    @Param({"0", "500"})
+    public long latencyMicros;
+
+    private DetectionFixture fixture;
+    private SecurityLog event;
+
+    @Setup
+    public void setup() {
+        List<SecurityLog> history = BenchmarkData.history(USER_ID, 1000, 1L);
+        fixture = new DetectionFixture(InMemorySecurityLogRepository.create(history, latencyMicros), mode);
+
+        SecurityLog last = history.get(history.size() - 1);
+        event = SecurityLog.builder()
+                .userId(USER_ID)
+                .eventType("TRANSFER")
+                .ipAddress(last.getIpAddress())
+                .deviceInfo(last.getDeviceInfo())
+                .country(last.getCountry())
+                .city(last.getCity())
+                .platform(last.getPlatform())
+                .browser(last.getBrowser())
+                .metadata(new HashMap<>(last.getMetadata()))
+                .biometryUsed(false)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.engine.shutdown();
+    }
+
+    @Benchmark
+    public boolean coldUser() {
+        fixture.invalidate(USER_ID);
+        return fixture.service.isSuspicious(event);
+    }
+}
@@ -0,0 +1,50 @@
+package com.globus.modul26.service;
+
+import com.globus.modul26.integrations.CefEventWriter;
+import com.globus.modul26.integrations.SIEMExporter;
+import com.globus.modul26.model.SecurityLog;
+import com.globus.modul26.repository.SecurityLogRepository;
+import com.globus.modul26.repository.SuspiciousEventRepository;
+import com.globus.modul26.util.UserAgentClassifier;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.List;
+
+// Сборка SecurityLogServiceImpl без Spring-контекста
+final class DetectionFixture {
+
+    final UserProfileCache profileCache;
+    final EventWindowCounters counters;
+    final DetectionEngine engine;
+    final SecurityLogServiceImpl service;
+
+    DetectionFixture(SecurityLogRepository repository) {
+        this(repository, "sequential");
+    }
+
+    DetectionFixture(SecurityLogRepository repository, String mode) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        this.profileCache = new UserProfileCache(repository, null, 10_000, "exact", 256, 0.01, 8, 20_000);
+        this.counters = new EventWindowCounters(repository, 10_000, 24);
+        this.engine = new DetectionEngine(profileCache, counters, repository, new DetectionMetrics(registry),
+                15, true, 1024, mode, 50);
+        CefEventWriter cefWriter = new CefEventWriter(registry, "target/jmh-cef.log", 1024, 256, 65536, "none", 1000);
+        // Не запущен: события копятся в кольце и отбрасываются, сеть не трогается
+        SIEMExporter siemExporter = new SIEMExporter(registry, true, "tcp", "localhost", 6514, 10, "modul26",
+                1024, 256, 65536, 1 << 20, 2000, 200, 30_000, 5000);
+        // Проекция suspicious_events в замерах не пишется
+        SuspiciousEventRepository suspiciousEvents = new SuspiciousEventRepository(null) {
+            @Override
+            public void append(SecurityLog log, List<String> ruleIds) {
+            }
+        };
+        this.service = new SecurityLogServiceImpl(repository, profileCache, counters, cefWriter, siemExporter,
+                new UserAgentClassifier(10_000), this.engine, suspiciousEvents,
+                new HotEventWindow(null, false, 24, 10, 0), registry, 1, 500, 50_000);
+    }
+
+    void invalidate(Long userId) {
+        profileCache.invalidate(userId);
+        counters.invalidate(userId);
+    }
+}
@@ -0,0 +1,65 @@
+package com.globus.modul26.service;
+
+import com.globus.modul26.config.CachingJwtDecoder;
+import com.globus.modul26.model.Role;
+import com.globus.modul26.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+
+    private static final String SECRET = "super-secure-random-string-change-me-please-super-long";
+
+    private JwtServiceImpl jwtService;
+    private JwtDecoder decoder;
+    private JwtDecoder cachingDecoder;
+    private User user;
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwtService = new JwtServiceImpl();
+        ReflectionTestUtils.setField(jwtService, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtService, "jwtExpirationMs", 3_600_000L);
+        jwtService.init();
+
+        // Тот же декодер, что в SecurityConfig
+        decoder = NimbusJwtDecoder.withSecretKey(new SecretKeySpec(SECRET.getBytes(), "HmacSHA256")).build();
+        cachingDecoder = new CachingJwtDecoder(decoder, new SimpleMeterRegistry(), 50_000, 600_000, 3_600_000);
+
+        user = new User();
+        user.setId(42L);
+        user.setEmail("user@example.com");
+        user.setRole(Role.USER);
+        token = jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public String issue() {
+        return jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public Jwt verify() {
+        return decoder.decode(token);
+    }
+
+    // Повторный токен: SHA-256 + поиск в кэше вместо HMAC и разбора claims
+    @Benchmark
+    public Jwt verifyCached() {
+        return cachingDecoder.decode(token);
+    }
+}
@@ -0,0 +1,67 @@
+package com.globus.modul26.util;
+
+import com.globus.modul26.model.SecurityLog;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Запускать с -prof gc: сравнивается gc.alloc.rate.norm на событие
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CefBenchmark {
+
+    private final CefEncoder encoder = new CefEncoder();
+    private final ByteBuffer out = ByteBuffer.allocateDirect(64 * 1024);
+    private SecurityLog event;
+
+    @Setup
+    public void setup() {
+        event = SecurityLog.builder()
+                .id(1_000_001)
+                .userId(42L)
+                .eventType("LOGIN")
+                .ipAddress("91.7**.***.15")
+                .deviceInfo("Mozilla/5.0 (Windows NT 10.0; Win64; x64) Chrome/124.0.0.0 Safari/537.36")
+                .biometryUsed(false)
+                .isSuspicious(true)
+                .createdAt(LocalDateTime.now())
+                .country("RUS")
+                .city("Moscow")
+                .build();
+    }
+
+    // Прежний путь CefEventWriter/CefUtil: карта расширений, StringBuilder, trim
+    @Benchmark
+    public String mapBased() {
+        Map<String, String> extension = new HashMap<>();
+        extension.put("userId", String.valueOf(event.getUserId()));
+        extension.put("eventType", event.getEventType());
+        extension.put("ip", event.getIpAddress());
+        extension.put("device_info", event.getDeviceInfo());
+        extension.put("biometry", event.getBiometryUsed().toString());
+        extension.put("isSuspicious", String.valueOf(event.getIsSuspicious()));
+        extension.put("country", event.getCountry());
+        extension.put("city", event.getCity());
+
+        StringBuilder cef = new StringBuilder();
+        cef.append("CEF:0|YourCompany|modul26|1.0|1001|").append(event.getEventType()).append("|8|");
+        extension.forEach((k, v) -> cef.append(k).append("=").append(v).append(" "));
+        return cef.toString().trim();
+    }
+
+    @Benchmark
+    public int encoder() {
+        encoder.encode(event);
+        out.clear();
+        encoder.writeTo(out);
+        return out.position();
+    }
+}
@@ -2,8 +2,10 @@ package com.globus.modul26;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class Modul26Application {
 
 	public static void main(String[] args) {
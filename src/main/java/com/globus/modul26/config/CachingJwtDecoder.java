@@ -0,0 +1,159 @@
+package com.globus.modul26.config;
+
+import com.globus.modul26.security.UserLockedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кэш проверенных JWT перед NimbusJwtDecoder. Ключ - SHA-256 строки токена;
+ * при попадании подпись не проверяется и claims не разбираются заново.
+ * Запись живёт не дольше exp токена и max-ttl, размер ограничен max-entries:
+ * при переполнении сначала вычищаются истёкшие записи, если места всё равно
+ * нет - токен просто не кэшируется.
+ * После блокировки пользователя его записи удаляются, а токены, выданные
+ * до блокировки, отклоняются и при повторной проверке.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private record Key(long a, long b, long c, long d) {}
+
+    private record Entry(Jwt jwt, long expiresAtMillis) {}
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final JwtDecoder delegate;
+    private final int maxEntries;
+    private final long maxTtlMillis;
+    private final long revocationTtlMillis;
+    private final Map<Key, Entry> cache = new ConcurrentHashMap<>();
+    // subject -> момент блокировки; токены с iat не позже него недействительны
+    private final Map<String, Instant> revokedAt = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer decodeLatency;
+
+    public CachingJwtDecoder(JwtDecoder delegate, MeterRegistry meterRegistry,
+                             int maxEntries, long maxTtlMillis, long revocationTtlMillis) {
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.maxTtlMillis = maxTtlMillis;
+        this.revocationTtlMillis = revocationTtlMillis;
+
+        this.hits = Counter.builder("jwt.decoder.cache")
+                .tag("result", "hit")
+                .description("JWT decodes answered from the verified-token cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("jwt.decoder.cache")
+                .tag("result", "miss")
+                .description("JWT decodes that required full verification")
+                .register(meterRegistry);
+        this.decodeLatency = Timer.builder("jwt.decoder.decode.latency")
+                .description("Full JWT parse and signature verification on cache miss")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("jwt.decoder.cache.size", cache, Map::size)
+                .description("Verified JWTs currently cached")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        if (token == null) {
+            return delegate.decode(null);
+        }
+        Key key = key(token);
+        long now = System.currentTimeMillis();
+        Entry entry = cache.get(key);
+        if (entry != null) {
+            if (now < entry.expiresAtMillis()) {
+                hits.increment();
+                return entry.jwt();
+            }
+            cache.remove(key, entry);
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        Jwt jwt;
+        try {
+            jwt = delegate.decode(token);
+        } finally {
+            decodeLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        // Сначала кладём, потом проверяем блокировку: revoke() чистит кэш после
+        // записи revokedAt, так что гонка не оставит в кэше отозванный токен
+        put(key, jwt, now);
+        if (isRevoked(jwt)) {
+            cache.remove(key);
+            throw new BadJwtException("Token was revoked");
+        }
+        return jwt;
+    }
+
+    @EventListener
+    public void onUserLocked(UserLockedEvent event) {
+        if (event.userId() != null) {
+            revoke(event.userId().toString());
+        }
+    }
+
+    public void revoke(String subject) {
+        revokedAt.put(subject, Instant.now());
+        cache.entrySet().removeIf(e -> subject.equals(e.getValue().jwt().getSubject()));
+    }
+
+    private boolean isRevoked(Jwt jwt) {
+        Instant revoked = jwt.getSubject() != null ? revokedAt.get(jwt.getSubject()) : null;
+        if (revoked == null) return false;
+        Instant issuedAt = jwt.getIssuedAt();
+        return issuedAt == null || !issuedAt.isAfter(revoked);
+    }
+
+    private void put(Key key, Jwt jwt, long now) {
+        long expiresAt = now + maxTtlMillis;
+        if (jwt.getExpiresAt() != null) {
+            expiresAt = Math.min(expiresAt, jwt.getExpiresAt().toEpochMilli());
+        }
+        if (expiresAt <= now) return;
+        if (cache.size() >= maxEntries) {
+            evictExpired(now);
+            if (cache.size() >= maxEntries) return;
+        }
+        cache.put(key, new Entry(jwt, expiresAt));
+    }
+
+    private void evictExpired(long now) {
+        cache.values().removeIf(e -> e.expiresAtMillis() <= now);
+        Instant revocationBorder = Instant.ofEpochMilli(now - revocationTtlMillis);
+        revokedAt.values().removeIf(at -> at.isBefore(revocationBorder));
+    }
+
+    private static Key key(String token) {
+        MessageDigest digest = SHA256.get();
+        ByteBuffer hash = ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        return new Key(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+    }
+}
@@ -0,0 +1,52 @@
+package com.globus.modul26.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замена logHeadersFilter: вместо печати Authorization на каждый запрос
+ * пишет строку тайминга для доли sample-rate запросов и для всех запросов
+ * дольше slow-threshold-ms. Заголовок не логируется - только факт его наличия.
+ * Логгер request.timing выведен в асинхронный аппендер (logback-spring.xml),
+ * поток запроса не ждёт вывода. Гистограммы по эндпоинтам - в
+ * http.server.requests (management.metrics.distribution.* в настройках).
+ */
+public class RequestTimingFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger("request.timing");
+
+    private final double sampleRate;
+    private final long slowThresholdNanos;
+
+    public RequestTimingFilter(double sampleRate, long slowThresholdMs) {
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMs);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(req, res);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            boolean slow = elapsed >= slowThresholdNanos;
+            if ((slow || ThreadLocalRandom.current().nextDouble() < sampleRate) && log.isInfoEnabled()) {
+                log.info("{} {} {} {} us auth={}{}", req.getMethod(), req.getRequestURI(), res.getStatus(),
+                        TimeUnit.NANOSECONDS.toMicros(elapsed),
+                        req.getHeader("Authorization") != null ? "bearer" : "none",
+                        slow ? " SLOW" : "");
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.globus.modul26.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
@@ -13,15 +14,8 @@ import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 import org.springframework.security.web.SecurityFilterChain;
-import org.springframework.web.filter.OncePerRequestFilter;
-
-import jakarta.servlet.FilterChain;
-import jakarta.servlet.ServletException;
-import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpServletResponse;
 
 import javax.crypto.spec.SecretKeySpec;
-import java.io.IOException;
 
 @Configuration
 @EnableWebSecurity
@@ -30,11 +24,15 @@ public class SecurityConfig {
     @Value("${myproject.jwt.secret:super-secure-random-string-change-me-please-super-long}")
     private String secret;
 
-    //  Декодер для JWT-токенов
+    //  Декодер для JWT-токенов: проверенные токены кэшируются до их exp
     @Bean
-    public JwtDecoder jwtDecoder() {
+    public CachingJwtDecoder jwtDecoder(MeterRegistry meterRegistry,
+                                        @Value("${security.jwt-cache.max-entries:50000}") int maxEntries,
+                                        @Value("${security.jwt-cache.max-ttl-ms:600000}") long maxTtlMs,
+                                        @Value("${jwt.expiration-ms:3600000}") long tokenLifetimeMs) {
         SecretKeySpec secretKey = new SecretKeySpec(secret.getBytes(), "HmacSHA256");
-        return NimbusJwtDecoder.withSecretKey(secretKey).build();
+        JwtDecoder nimbus = NimbusJwtDecoder.withSecretKey(secretKey).build();
+        return new CachingJwtDecoder(nimbus, meterRegistry, maxEntries, maxTtlMs, tokenLifetimeMs);
     }
 
     //  Шифратор для паролей
@@ -81,7 +79,11 @@ public class SecurityConfig {
                         
                         .requestMatchers("/api/logs/user/**").hasAnyRole("ADMIN", "USER")
                         .requestMatchers("/api/logs/suspicious").hasRole("ADMIN")
+                        .requestMatchers("/api/logs/suspicious/rebuild").hasRole("ADMIN")
+                        .requestMatchers("/api/logs/hot/**").hasRole("ADMIN")
                         .requestMatchers("/api/logs/event").hasAnyRole("ADMIN", "USER")
+                        .requestMatchers("/api/logs/events").hasAnyRole("ADMIN", "USER")
+                        .requestMatchers("/api/users/import").hasRole("ADMIN")
                       
                         .anyRequest().authenticated()
                 )
@@ -93,18 +95,13 @@ public class SecurityConfig {
         return http.build();
     }
 
-    
+    // Сэмплированный тайминг запросов (вместо печати заголовка Authorization)
     @Bean
-    public FilterRegistrationBean<OncePerRequestFilter> logHeadersFilter() {
-        FilterRegistrationBean<OncePerRequestFilter> bean = new FilterRegistrationBean<>();
-        bean.setFilter(new OncePerRequestFilter() {
-            @Override
-            protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
-                    throws IOException, ServletException {
-                System.out.println("AUTH HEADER: " + req.getHeader("Authorization"));
-                chain.doFilter(req, res);
-            }
-        });
+    public FilterRegistrationBean<RequestTimingFilter> requestTimingFilter(
+            @Value("${monitoring.request-timing.sample-rate:0.01}") double sampleRate,
+            @Value("${monitoring.request-timing.slow-threshold-ms:500}") long slowThresholdMs) {
+        FilterRegistrationBean<RequestTimingFilter> bean = new FilterRegistrationBean<>();
+        bean.setFilter(new RequestTimingFilter(sampleRate, slowThresholdMs));
         bean.addUrlPatterns("/*");
         bean.setOrder(1);
         return bean;
@@ -4,17 +4,23 @@ import jakarta.servlet.http.HttpServletRequest;
 import java.util.Optional;
 import java.util.Date;
 import java.util.List;
+import java.time.Duration;
 import java.time.LocalDateTime;
 
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 
-import com.globus.modul26.model.User;
 import com.globus.modul26.model.SecurityLog;
-import com.globus.modul26.repository.UserRepository;
+import com.globus.modul26.repository.UserLockoutRepository;
+import com.globus.modul26.repository.UserLockoutRepository.LockoutState;
+import com.globus.modul26.security.UserLockedEvent;
 import com.globus.modul26.service.SecurityLogService;
+import com.globus.modul26.service.UserAuthCache;
+import com.globus.modul26.service.UserAuthCache.AuthState;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
@@ -25,84 +31,76 @@ public class AuthController {
 
     private static final String SECRET = "super-secure-random-string-change-me-please-super-long";
 
-    private final UserRepository userRepository;
+    private final UserAuthCache authCache;
+    private final UserLockoutRepository lockoutRepository;
     private final PasswordEncoder passwordEncoder;
     private final SecurityLogService securityLogService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxFailedAttempts;
+    private final Duration lockDuration;
 
     @Autowired
-    public AuthController(UserRepository userRepository,
+    public AuthController(UserAuthCache authCache,
+                          UserLockoutRepository lockoutRepository,
                           PasswordEncoder passwordEncoder,
-                          SecurityLogService securityLogService) {
-        this.userRepository = userRepository;
+                          SecurityLogService securityLogService,
+                          ApplicationEventPublisher eventPublisher,
+                          @Value("${security.lockout.max-attempts:3}") int maxFailedAttempts,
+                          @Value("${security.lockout.duration-minutes:15}") long lockDurationMinutes) {
+        this.authCache = authCache;
+        this.lockoutRepository = lockoutRepository;
         this.passwordEncoder = passwordEncoder;
         this.securityLogService = securityLogService;
+        this.eventPublisher = eventPublisher;
+        this.maxFailedAttempts = maxFailedAttempts;
+        this.lockDuration = Duration.ofMinutes(lockDurationMinutes);
     }
 
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody LoginRequest login, HttpServletRequest request) {
-        Optional<User> userOpt = userRepository.findByUsername(login.getUsername());
-        Long userId = userOpt.map(User::getId).orElse(null);
+        Optional<AuthState> stateOpt = authCache.get(login.getUsername());
+        Long userId = stateOpt.map(AuthState::id).orElse(null);
+        LocalDateTime now = LocalDateTime.now();
 
-        //  Проверка блокировкИ пользо вателя
-        if (userOpt.isPresent() && Boolean.TRUE.equals(userOpt.get().getLocked())) {
+        //  Проверка блокировкИ пользо вателя (постоянной или временной)
+        if (stateOpt.isPresent() && stateOpt.get().isLocked(now)) {
             // Логируем попытку входа для уже заблокированного юзера
-            securityLogService.saveLog(SecurityLog.builder()
-                    .userId(userId)
-                    .eventType("LOGIN_ATTEMPT")
-                    .ipAddress(request.getRemoteAddr())
-                    .isSuspicious(true)
-                    .deviceInfo(request.getHeader("User-Agent"))
-                    .createdAt(LocalDateTime.now())
-                    .build()
-            );
+            saveAttempt(userId, request, true);
             return ResponseEntity.status(403).body("Пользователь заблокирован из-за многократных неудачных попыток входа");
         }
 
-        boolean success = userOpt.isPresent()
-                && passwordEncoder.matches(login.getPassword(), userOpt.get().getPassword());
+        boolean success = stateOpt.isPresent()
+                && passwordEncoder.matches(login.getPassword(), stateOpt.get().passwordHash());
 
         //  Логироваан попытку входа
-        securityLogService.saveLog(SecurityLog.builder()
-                .userId(userId)
-                .eventType("LOGIN_ATTEMPT")
-                .ipAddress(request.getRemoteAddr())
-                .isSuspicious(!success)  // true - если неудачная попытка
-                .deviceInfo(request.getHeader("User-Agent"))
-                .createdAt(LocalDateTime.now())
-                .build()
-        );
+        saveAttempt(userId, request, !success);  // true - если неудачная попытка
 
-        // 3. Если не успех — блок
+        // 3. Если не успех — счётчик в users одним UPDATE, при достижении лимита временный блок
         if (!success) {
-            if (userOpt.isPresent()) {
-                User user = userOpt.get();
-
-                // 3 попытки входа для пользователя
-                List<SecurityLog> lastAttempts = securityLogService.getLastLoginAttempts(user.getId(), 3);
-
-                // пПРОВЕРКА все ли последниХ 3  ПОПЫТОК
-                boolean lastThreeFailed = lastAttempts.size() == 3 &&
-                        lastAttempts.stream().allMatch(SecurityLog::getIsSuspicious);
-
-                if (lastThreeFailed) {
-                    user.setLocked(true);
-                    userRepository.save(user);
+            if (stateOpt.isPresent()) {
+                Optional<LockoutState> lockout = lockoutRepository.recordFailure(
+                        userId, now, maxFailedAttempts, now.plus(lockDuration));
+                if (lockout.isPresent() && lockout.get().isLocked(now)) {
+                    authCache.updateLockedUntil(login.getUsername(), lockout.get().lockedUntil());
+                    eventPublisher.publishEvent(new UserLockedEvent(userId));
                     return ResponseEntity.status(403)
-                            .body("Пользователь заблокирован из-за 3 неудачных попыток входа подряд");
+                            .body("Пользователь заблокирован из-за " + maxFailedAttempts + " неудачных попыток входа подряд");
                 }
             }
             return ResponseEntity.status(401).body("Неверный логин или пароль");
         }
 
-        //  Если ок — обновляение время последнего входа
-        User user = userOpt.get();
-        user.setLastLogin(LocalDateTime.now());
-        userRepository.save(user);
+        //  Если ок — сброс счётчика и время последнего входа; 0 строк - блок поставлен параллельно
+        if (!lockoutRepository.recordSuccess(userId, now)) {
+            authCache.invalidate(login.getUsername());
+            return ResponseEntity.status(403).body("Пользователь заблокирован из-за многократных неудачных попыток входа");
+        }
 
+        AuthState user = stateOpt.get();
         String token = Jwts.builder()
-                .setSubject(user.getId().toString())
-                .claim("roles", List.of(user.getRole().name()))
-                .claim("email", user.getEmail())
+                .setSubject(user.id().toString())
+                .claim("roles", List.of(user.role().name()))
+                .claim("email", user.email())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + 60 * 60 * 1000))
                 .signWith(SignatureAlgorithm.HS256, SECRET.getBytes())
@@ -111,6 +109,18 @@ public class AuthController {
         return ResponseEntity.ok(new JwtResponse(token));
     }
 
+    private void saveAttempt(Long userId, HttpServletRequest request, boolean suspicious) {
+        securityLogService.saveLog(SecurityLog.builder()
+                .userId(userId)
+                .eventType("LOGIN_ATTEMPT")
+                .ipAddress(request.getRemoteAddr())
+                .isSuspicious(suspicious)
+                .deviceInfo(request.getHeader("User-Agent"))
+                .createdAt(LocalDateTime.now())
+                .build()
+        );
+    }
+
     // DTO для логина
     static class LoginRequest {
         private String username;
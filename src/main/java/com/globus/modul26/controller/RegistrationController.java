@@ -6,32 +6,35 @@ import com.globus.modul26.repository.UserRepository;
 import com.globus.modul26.dto.RegisterRequest;
 import com.globus.modul26.dto.RegisterResponse;
 import com.globus.modul26.service.JwtService;
+import com.globus.modul26.service.PasswordHashingPool;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/auth")
 public class RegistrationController {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingPool passwordHashingPool;
     private final JwtService jwtService;
 
     public RegistrationController(
             UserRepository userRepository,
-            PasswordEncoder passwordEncoder,
+            PasswordHashingPool passwordHashingPool,
             JwtService jwtService
     ) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingPool = passwordHashingPool;
         this.jwtService = jwtService;
     }
 
     @PostMapping("/register")
-    public ResponseEntity<?> registerUser(@RequestBody RegisterRequest req) {
+    public CompletableFuture<ResponseEntity<?>> registerUser(@RequestBody RegisterRequest req) {
         // Проверка обязательных полей
         if (req.getUsername() == null || req.getUsername().isBlank() ||
                 req.getPassword() == null || req.getPassword().isBlank() ||
@@ -39,17 +42,8 @@ public class RegistrationController {
                 req.getFirstName() == null || req.getFirstName().isBlank() ||
                 req.getLastName() == null || req.getLastName().isBlank() ||
                 req.getRole() == null || req.getRole().isBlank()) {
-            return ResponseEntity.badRequest().body("Заполните все обязательные поля");
-        }
-
-        // Проверка email на уникальность
-        if (userRepository.existsByEmail(req.getEmail())) {
-            return ResponseEntity.badRequest().body("Email уже используется");
-        }
-
-        // Проверка username на уникальность
-        if (userRepository.existsByUsername(req.getUsername())) {
-            return ResponseEntity.badRequest().body("Username уже используется");
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.badRequest().body("Заполните все обязательные поля"));
         }
 
         // Конверсия роли из String в Enum
@@ -57,42 +51,65 @@ public class RegistrationController {
         try {
             userRole = Role.valueOf(req.getRole());
         } catch (IllegalArgumentException e) {
-            return ResponseEntity.badRequest().body("Некорректная роль: " + req.getRole());
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.badRequest().body("Некорректная роль: " + req.getRole()));
         }
 
-        // Создаеие пользователя
-        User user = new User();
-        user.setUsername(req.getUsername());
-        user.setEmail(req.getEmail());
-        user.setPassword(passwordEncoder.encode(req.getPassword()));
-        user.setFirstName(req.getFirstName());
-        user.setLastName(req.getLastName());
-        user.setPhone(req.getPhone());
-        user.setRole(userRole);
-        user.setCreatedAt(LocalDateTime.now());
-
-        userRepository.save(user);
-
-        // Генерирация токена
-        String jwtToken = jwtService.generateToken(user);
-
-        // Маскировка email
-        String maskedEmail = maskEmail(user.getEmail());
-
-        // Формирование ОТВЕТа :
-        RegisterResponse response = new RegisterResponse(
-                user.getId(),
-                user.getUsername(),
-                maskedEmail,
-                user.getFirstName(),
-                user.getLastName(),
-                user.getPhone(),
-                user.getRole().toString()
-
-
-        );
+        // BCrypt - в отдельном пуле, поток Tomcat освобождается до конца хэширования
+        return passwordHashingPool.encode(req.getPassword()).thenApply(passwordHash -> {
+            // Создаеие пользователя
+            User user = new User();
+            user.setUsername(req.getUsername());
+            user.setEmail(req.getEmail());
+            user.setPassword(passwordHash);
+            user.setFirstName(req.getFirstName());
+            user.setLastName(req.getLastName());
+            user.setPhone(req.getPhone());
+            user.setRole(userRole);
+            user.setCreatedAt(LocalDateTime.now());
+
+            // Уникальность email/username проверяет сама БД: один INSERT без предварительных exists
+            try {
+                userRepository.save(user);
+            } catch (DataIntegrityViolationException e) {
+                String conflict = conflictMessage(e);
+                if (conflict == null) throw e;
+                return ResponseEntity.badRequest().body(conflict);
+            }
+
+            // Генерирация токена
+            String jwtToken = jwtService.generateToken(user);
+
+            // Маскировка email
+            String maskedEmail = maskEmail(user.getEmail());
+
+            // Формирование ОТВЕТа :
+            RegisterResponse response = new RegisterResponse(
+                    user.getId(),
+                    user.getUsername(),
+                    maskedEmail,
+                    user.getFirstName(),
+                    user.getLastName(),
+                    user.getPhone(),
+                    user.getRole().toString()
+
+
+            );
+
+            return ResponseEntity.ok(response);
+        });
+    }
 
-        return ResponseEntity.ok(response);
+    // Нарушение uk_users_email / uk_users_username -> прежние сообщения; null - другая ошибка
+    private static String conflictMessage(DataIntegrityViolationException e) {
+        String message = String.valueOf(e.getMostSpecificCause().getMessage()).toLowerCase(Locale.ROOT);
+        if (message.contains("uk_users_email") || message.contains("key (email)")) {
+            return "Email уже используется";
+        }
+        if (message.contains("uk_users_username") || message.contains("key (username)")) {
+            return "Username уже используется";
+        }
+        return null;
     }
 
     // --- Утилита для маскировки email ---
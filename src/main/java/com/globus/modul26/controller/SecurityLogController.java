@@ -1,31 +1,55 @@
 package com.globus.modul26.controller;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.globus.modul26.dto.BulkIngestResponse;
+import com.globus.modul26.dto.HotWindowReport;
+import com.globus.modul26.dto.SecurityLogPage;
+import com.globus.modul26.dto.SuspiciousEventPage;
 import com.globus.modul26.model.SecurityLog;
+import com.globus.modul26.repository.SuspiciousEventRepository;
+import com.globus.modul26.service.HotEventWindow;
+import com.globus.modul26.service.SecurityLogBulkIngestService;
+import com.globus.modul26.service.SecurityLogEnricher;
+import com.globus.modul26.service.SecurityLogHistoryService;
+import com.globus.modul26.service.SecurityLogIngestQueue;
 import com.globus.modul26.service.SecurityLogService;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.servlet.http.HttpServletRequest;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.zip.ZipException;
 
 @RestController
 @RequestMapping("/api/logs")
 public class SecurityLogController {
 
     private final SecurityLogService service;
-    private static final ObjectMapper objectMapper = new ObjectMapper();
-
-    public SecurityLogController(SecurityLogService service) {
+    private final SecurityLogIngestQueue ingestQueue;
+    private final SecurityLogEnricher enricher;
+    private final SecurityLogBulkIngestService bulkIngestService;
+    private final SecurityLogHistoryService historyService;
+    private final HotEventWindow hotWindow;
+
+    public SecurityLogController(SecurityLogService service,
+                                 SecurityLogIngestQueue ingestQueue,
+                                 SecurityLogEnricher enricher,
+                                 SecurityLogBulkIngestService bulkIngestService,
+                                 SecurityLogHistoryService historyService,
+                                 HotEventWindow hotWindow) {
         this.service = service;
+        this.ingestQueue = ingestQueue;
+        this.enricher = enricher;
+        this.bulkIngestService = bulkIngestService;
+        this.historyService = historyService;
+        this.hotWindow = hotWindow;
     }
 
     @PostMapping("/event")
@@ -38,61 +62,60 @@ public class SecurityLogController {
         Long userId = Long.parseLong(jwt.getSubject());
         log.setUserId(userId);
 
-        String clientIp = getClientIp(request);
-        String maskedIp = maskIp(clientIp);
-
-        //  Гарантированная маскировка и защита от null/UNKNOWN/localhost
-        if (maskedIp == null || maskedIp.trim().isEmpty() || maskedIp.equals("null") ||
-                maskedIp.toLowerCase().contains("unknown") ||
-                maskedIp.equals("0:0:0:0:0:0:0:1") || maskedIp.equals("127.0.0.1")) {
-            maskedIp = "UNKNOWN";
-        }
-        log.setIpAddress(maskedIp);
-
-        String deviceInfo = request.getHeader("User-Agent");
-        log.setDeviceInfo(deviceInfo);
+        enricher.enrich(log, getClientIp(request), request.getHeader("User-Agent"));
 
-        String browser = parseBrowser(deviceInfo);
-        String platform = parsePlatform(deviceInfo);
-
-        Map<String, String> geo = getGeoDataByIp(clientIp); // JSON-парсер!
-        String country = geo.getOrDefault("country", "Unknown");
-        String city = geo.getOrDefault("city", "Unknown");
-
-        // Сохраняем метаданные
-        Map<String, Object> metadataMap;
-        if (log.getMetadata() instanceof Map) {
-            metadataMap = new HashMap<>((Map<String, Object>) log.getMetadata());
-        } else {
-            metadataMap = new HashMap<>();
-        }
-        metadataMap.put("country", country);
-        metadataMap.put("city", city);
-        if (!"Unknown".equals(platform)) {
-            metadataMap.put("platform", platform);
-        }
-        if (!"Unknown".equals(browser)) {
-            metadataMap.put("browser", browser);
+        if (ingestQueue.isEnabled()) {
+            // Асинхронный режим: оцениваем сразу, в БД запишет пакетный писатель
+            SecurityLog prepared = service.prepareLog(log);
+            if (!ingestQueue.submit(prepared)) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header("Retry-After", "1")
+                        .build();
+            }
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(prepared);
         }
-        log.setMetadata(metadataMap);
 
-        log.setIsSuspicious(null);
+        SecurityLog saved = service.saveLog(log);
+        return ResponseEntity.status(HttpStatus.CREATED).body(saved);
+    }
 
-        if (log.getBiometryUsed() == null) {
-            log.setBiometryUsed(false);
-        }
+    // NDJSON, можно со сжатием (Content-Encoding: gzip); ADMIN может передавать userId в записях
+    @PostMapping(value = "/events", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "application/jsonl"})
+    public ResponseEntity<BulkIngestResponse> logEvents(
+            Authentication authentication,
+            HttpServletRequest request
+    ) throws IOException {
+        Jwt jwt = (Jwt) authentication.getPrincipal();
+        List<String> rolesList = jwt.getClaimAsStringList("roles");
+        boolean isAdmin = rolesList != null && rolesList.contains("ADMIN");
+        String encoding = request.getHeader("Content-Encoding");
+        boolean gzip = encoding != null && encoding.toLowerCase().contains("gzip");
 
-        if (log.getIpAddress() == null || log.getIpAddress().trim().isEmpty()) {
-            log.setIpAddress("UNKNOWN");
+        SecurityLogBulkIngestService.Source source = new SecurityLogBulkIngestService.Source(
+                Long.parseLong(jwt.getSubject()), isAdmin, getClientIp(request), request.getHeader("User-Agent"));
+        try {
+            return ResponseEntity.ok(bulkIngestService.ingest(request.getInputStream(), gzip, source));
+        } catch (ZipException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid gzip body");
         }
+    }
 
-        SecurityLog saved = service.saveLog(log);
-        return ResponseEntity.status(HttpStatus.CREATED).body(saved);
+    // Только ADMIN (см. SecurityConfig); cursor - последний id предыдущей страницы
+    @GetMapping("/suspicious")
+    public ResponseEntity<SecurityLogPage> getSuspicious(
+            @RequestParam(required = false) Integer cursor,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(defaultValue = "false") boolean rescore
+    ) {
+        return ResponseEntity.ok(service.findSuspiciousLogs(cursor, limit, rescore));
     }
 
+    // Читает проекцию suspicious_events; cursor - logId последней строки предыдущей страницы
     @GetMapping("/suspicious/{userId}")
-    public ResponseEntity<List<SecurityLog>> getSuspiciousByUser(
+    public ResponseEntity<SuspiciousEventPage> getSuspiciousByUser(
             @PathVariable Long userId,
+            @RequestParam(required = false) Integer cursor,
+            @RequestParam(defaultValue = "100") int limit,
             Authentication authentication
     ) {
         Jwt jwt = (Jwt) authentication.getPrincipal();
@@ -106,14 +129,77 @@ public class SecurityLogController {
         } catch (Exception ignored) {}
 
         if (isAdmin || (isUser && Objects.equals(jwtUserId, userId))) {
-            return ResponseEntity.ok(service.findSuspiciousLogsByUserId(userId));
+            return ResponseEntity.ok(service.findSuspiciousEventsByUserId(userId, cursor, limit));
         }
         throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
     }
 
+    // Только ADMIN (см. SecurityConfig): аналитика по окну последних событий в памяти, без запросов к БД
+    @GetMapping("/hot/countries")
+    public ResponseEntity<HotWindowReport> hotByCountry(
+            @RequestParam(defaultValue = "60") int minutes,
+            @RequestParam(required = false) String eventType,
+            @RequestParam(required = false) Boolean suspicious,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(defaultValue = "50") int limit
+    ) {
+        return hotReport(HotEventWindow.GroupBy.COUNTRY, minutes, eventType, suspicious, userId, limit);
+    }
+
+    // Например, неудачные входы: eventType=LOGIN_ATTEMPT&suspicious=true
+    @GetMapping("/hot/ips")
+    public ResponseEntity<HotWindowReport> hotByIp(
+            @RequestParam(defaultValue = "60") int minutes,
+            @RequestParam(required = false) String eventType,
+            @RequestParam(required = false) Boolean suspicious,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+        return hotReport(HotEventWindow.GroupBy.IP, minutes, eventType, suspicious, userId, limit);
+    }
+
+    @GetMapping("/hot/event-types")
+    public ResponseEntity<HotWindowReport> hotByEventType(
+            @RequestParam(defaultValue = "60") int minutes,
+            @RequestParam(required = false) Boolean suspicious,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(defaultValue = "50") int limit
+    ) {
+        return hotReport(HotEventWindow.GroupBy.EVENT_TYPE, minutes, null, suspicious, userId, limit);
+    }
+
+    @GetMapping("/hot/stats")
+    public ResponseEntity<HotEventWindow.Stats> hotStats() {
+        return ResponseEntity.ok(hotWindow.stats());
+    }
+
+    private ResponseEntity<HotWindowReport> hotReport(HotEventWindow.GroupBy groupBy, int minutes, String eventType,
+                                                      Boolean suspicious, Long userId, int limit) {
+        if (!hotWindow.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Hot window is disabled");
+        }
+        if (minutes <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "minutes must be positive");
+        }
+        HotEventWindow.Query query = new HotEventWindow.Query(
+                LocalDateTime.now().minusMinutes(minutes), eventType, suspicious, userId);
+        return ResponseEntity.ok(hotWindow.groupCount(groupBy, query, limit));
+    }
+
+    // Только ADMIN (см. SecurityConfig): убрать лишние строки проекции и добавить недостающие
+    @PostMapping("/suspicious/rebuild")
+    public ResponseEntity<SuspiciousEventRepository.RebuildResult> rebuildSuspicious() {
+        return ResponseEntity.ok(service.rebuildSuspiciousEvents());
+    }
+
+    // Страницы по (createdAt, id) от новых к старым; fields - выбор полей; stream=true - вся история NDJSON-потоком
     @GetMapping("/users/{userId}")
-    public ResponseEntity<List<SecurityLog>> getByUser(
+    public ResponseEntity<?> getByUser(
             @PathVariable Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String fields,
+            @RequestParam(defaultValue = "false") boolean stream,
             Authentication authentication
     ) {
         Jwt jwt = (Jwt) authentication.getPrincipal();
@@ -127,22 +213,20 @@ public class SecurityLogController {
         } catch (Exception ignored) {}
 
         if (isAdmin || (isUser && Objects.equals(jwtUserId, userId))) {
-            return ResponseEntity.ok(service.findByUserId(userId));
+            try {
+                if (stream) {
+                    historyService.validate(cursor, fields);
+                    StreamingResponseBody body = out -> historyService.stream(userId, cursor, fields, out);
+                    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+                }
+                return ResponseEntity.ok(historyService.page(userId, cursor, limit, fields));
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
         }
         throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
     }
 
-    //  Маскирует IP-адрес
-    private static String maskIp(String ip) {
-        if (ip == null) return null;
-        String[] parts = ip.split("\\.");
-        if (parts.length != 4) return ip; // если это IPv6 или некорректно, возвращаем как есть
-        String first = parts[0];
-        String second = parts[1].isEmpty() ? "*" : parts[1].substring(0, 1);
-        String fourth = parts[3];
-        return String.format("%s.%s**.***.%s", first, second, fourth);
-    }
-
     //  Получает реальный IP пользователя
     private static String getClientIp(HttpServletRequest request) {
         String xForwardedFor = request.getHeader("X-Forwarded-For");
@@ -159,62 +243,4 @@ public class SecurityLogController {
         }
         return "UNKNOWN";
     }
-
-    //  Правильный парсинг страны и города по IP через ipapi.co с использованием Jackson
-    private static Map<String, String> getGeoDataByIp(String ip) {
-        Map<String, String> geoData = new HashMap<>();
-        try {
-            if (ip == null || ip.startsWith("127.") || ip.startsWith("192.168.") ||
-                    ip.startsWith("10.") || ip.equals("0:0:0:0:0:0:0:1") ||
-                    ip.equalsIgnoreCase("UNKNOWN")) {
-                geoData.put("country", "Unknown");
-                geoData.put("city", "Unknown");
-                return geoData;
-            }
-            URL url = new URL("https://ipapi.co/" + ip + "/json/");
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-
-            try (BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()))) {
-                StringBuilder response = new StringBuilder();
-                String inputLine;
-                while ((inputLine = in.readLine()) != null) {
-                    response.append(inputLine);
-                }
-                String json = response.toString();
-
-                Map<String, Object> map = objectMapper.readValue(json, Map.class);
-                String country = map.get("country_name") != null ? map.get("country_name").toString() : "Unknown";
-                String city = map.get("city") != null ? map.get("city").toString() : "Unknown";
-                geoData.put("country", country);
-                geoData.put("city", city);
-            }
-        } catch (Exception e) {
-            geoData.put("country", "Unknown");
-            geoData.put("city", "Unknown");
-        }
-        return geoData;
-    }
-
-    //  Определение браузера
-    private static String parseBrowser(String userAgent) {
-        if (userAgent == null) return "Unknown";
-        if (userAgent.contains("OPR") || userAgent.contains("Opera")) return "Opera";
-        if (userAgent.contains("Edg") || userAgent.contains("Edge")) return "Edge";
-        if (userAgent.contains("Chrome")) return "Chrome";
-        if (userAgent.contains("Firefox")) return "Firefox";
-        if (userAgent.contains("Safari") && !userAgent.contains("Chrome")) return "Safari";
-        return "Unknown";
-    }
-
-    //  Определение операционной системы
-    private static String parsePlatform(String userAgent) {
-        if (userAgent == null) return "Unknown";
-        if (userAgent.contains("Windows")) return "Windows";
-        if (userAgent.contains("Mac OS") || userAgent.contains("Macintosh")) return "Mac";
-        if (userAgent.contains("Linux")) return "Linux";
-        if (userAgent.contains("Android")) return "Android";
-        if (userAgent.contains("iPhone") || userAgent.contains("iPad") || userAgent.contains("iOS")) return "iOS";
-        return "Unknown";
-    }
 }
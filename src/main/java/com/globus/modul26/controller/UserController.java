@@ -1,10 +1,20 @@
 package com.globus.modul26.controller;
 
+import com.globus.modul26.dto.UserImportResponse;
 import com.globus.modul26.model.User;
 import com.globus.modul26.repository.UserRepository;
+import com.globus.modul26.service.UserBulkImportService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.zip.ZipException;
 
 @RestController
 @RequestMapping("/api/users")
@@ -13,9 +23,30 @@ public class UserController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserBulkImportService userBulkImportService;
+
     @GetMapping("/by-email")
     public User getUserByEmail(@RequestParam String email) {
         return userRepository.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
     }
-}
\ No newline at end of file
+
+    // Только ADMIN (см. SecurityConfig); CSV с заголовком или NDJSON, можно с Content-Encoding: gzip
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE, "application/jsonl"})
+    public ResponseEntity<UserImportResponse> importUsers(HttpServletRequest request) throws IOException {
+        MediaType contentType = MediaType.parseMediaType(request.getContentType());
+        UserBulkImportService.Format format = "csv".equalsIgnoreCase(contentType.getSubtype())
+                ? UserBulkImportService.Format.CSV
+                : UserBulkImportService.Format.NDJSON;
+        String encoding = request.getHeader("Content-Encoding");
+        boolean gzip = encoding != null && encoding.toLowerCase().contains("gzip");
+        try {
+            return ResponseEntity.ok(userBulkImportService.importUsers(request.getInputStream(), format, gzip));
+        } catch (ZipException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid gzip body");
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.globus.modul26.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Итог пакетного приёма NDJSON: счётчики и статус каждой строки.
+ * status: created - записано, accepted - в очереди асинхронной записи,
+ * invalid - строка не разобрана, rejected - очередь переполнена,
+ * failed - ошибка записи пачки, skipped - превышен лимит записей.
+ */
+public record BulkIngestResponse(int received,
+                                 int persisted,
+                                 int suspicious,
+                                 int failed,
+                                 List<RecordStatus> records) {
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record RecordStatus(int line, String status, Boolean suspicious, String error) {}
+}
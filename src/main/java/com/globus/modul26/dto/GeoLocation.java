@@ -0,0 +1,11 @@
+package com.globus.modul26.dto;
+
+// Результат геопоиска; экземпляры создаются один раз при загрузке базы
+public record GeoLocation(String countryIso3, String countryName, String city) {
+
+    public static final GeoLocation UNKNOWN = new GeoLocation("Unknown", "Unknown", "Unknown");
+
+    public boolean isKnown() {
+        return this != UNKNOWN;
+    }
+}
@@ -0,0 +1,18 @@
+package com.globus.modul26.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Ответ аналитики по окну последних событий в памяти. since - начало
+ * посчитанного периода; coveredSince - с какого момента окно содержит все
+ * события (после рестарта или за пределами окна запрос покрыт не целиком).
+ */
+public record HotWindowReport(String groupBy,
+                              LocalDateTime since,
+                              LocalDateTime coveredSince,
+                              long total,
+                              List<Count> items) {
+
+    public record Count(String key, long count) {}
+}
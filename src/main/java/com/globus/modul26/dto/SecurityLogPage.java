@@ -0,0 +1,24 @@
+package com.globus.modul26.dto;
+
+import com.globus.modul26.model.SecurityLog;
+
+import java.util.List;
+
+// Страница событий для keyset-пагинации: nextCursor == null - данных больше нет
+public class SecurityLogPage {
+    private List<SecurityLog> items;
+    private Integer nextCursor;
+
+    public SecurityLogPage() {}
+
+    public SecurityLogPage(List<SecurityLog> items, Integer nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<SecurityLog> getItems() { return items; }
+    public void setItems(List<SecurityLog> items) { this.items = items; }
+
+    public Integer getNextCursor() { return nextCursor; }
+    public void setNextCursor(Integer nextCursor) { this.nextCursor = nextCursor; }
+}
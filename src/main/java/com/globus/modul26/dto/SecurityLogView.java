@@ -0,0 +1,27 @@
+package com.globus.modul26.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.time.LocalDateTime;
+
+/**
+ * Строка истории событий с выбранными полями (fields=): невыбранные поля
+ * не читаются из БД и не попадают в JSON. metadata отдаётся как есть из
+ * jsonb, без разбора в Map.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record SecurityLogView(Integer id,
+                              Long userId,
+                              String eventType,
+                              String ipAddress,
+                              String deviceInfo,
+                              LocalDateTime createdAt,
+                              @JsonRawValue String metadata,
+                              String country,
+                              String city,
+                              String platform,
+                              String browser,
+                              Boolean biometryUsed,
+                              Boolean isSuspicious) {
+}
@@ -0,0 +1,7 @@
+package com.globus.modul26.dto;
+
+import java.util.List;
+
+// Страница истории по (created_at, id) от новых к старым: nextCursor == null - данных больше нет
+public record SecurityLogViewPage(List<SecurityLogView> items, String nextCursor) {
+}
@@ -0,0 +1,14 @@
+package com.globus.modul26.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Строка проекции suspicious_events; rules пуст, если правила неизвестны (восстановлено из истории)
+public record SuspiciousEvent(Integer logId,
+                              Long userId,
+                              String eventType,
+                              String ipAddress,
+                              String country,
+                              LocalDateTime createdAt,
+                              List<String> rules) {
+}
@@ -0,0 +1,7 @@
+package com.globus.modul26.dto;
+
+import java.util.List;
+
+// Страница suspicious_events пользователя: nextCursor - logId последней строки, null - данных больше нет
+public record SuspiciousEventPage(List<SuspiciousEvent> items, Integer nextCursor) {
+}
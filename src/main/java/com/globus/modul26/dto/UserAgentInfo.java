@@ -0,0 +1,7 @@
+package com.globus.modul26.dto;
+
+// Результат разбора User-Agent; экземпляры интернированы классификатором
+public record UserAgentInfo(String browser, String platform, String deviceClass) {
+
+    public static final UserAgentInfo UNKNOWN = new UserAgentInfo("Unknown", "Unknown", "unknown");
+}
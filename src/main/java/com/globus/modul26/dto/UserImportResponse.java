@@ -0,0 +1,24 @@
+package com.globus.modul26.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Итог импорта пользователей: счётчики, скорость и строки, которые не
+ * записаны (успешные не перечисляются, чтобы ответ не рос с размером файла).
+ * status: invalid - строка не разобрана или не прошла проверку,
+ * duplicate - username или email уже заняты, failed - ошибка записи пачки,
+ * skipped - превышен лимит записей.
+ */
+public record UserImportResponse(int received,
+                                 int imported,
+                                 int duplicates,
+                                 int failed,
+                                 long elapsedMs,
+                                 double rowsPerSecond,
+                                 List<RowStatus> rejected) {
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record RowStatus(int line, String username, String status, String error) {}
+}
@@ -0,0 +1,279 @@
+package com.globus.modul26.integrations;
+
+import com.globus.modul26.model.SecurityLog;
+import com.globus.modul26.util.CefEncoder;
+import com.globus.modul26.util.MpscRingBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Запись подозрительных событий в CEF-файл вместо синхронного logback-аппендера.
+ * Потоки запросов только кладут событие в кольцевой буфер (без блокировок);
+ * единственный поток-писатель кодирует события (CefEncoder) в переиспользуемый
+ * direct ByteBuffer и пишет в FileChannel большими пачками.
+ * Политика fsync (cef.writer.fsync): none - на усмотрение ОС, interval - не
+ * чаще раза в fsync-interval-ms (и не позже чем через fsync-interval-ms после
+ * записи, даже если новых событий нет), every_batch - после каждой пачки.
+ * Если буфер переполнен, событие отбрасывается и учитывается в метрике.
+ * Ротацию (rotate) выполняет сам поток-писатель между пачками: файл
+ * дописывается, переименовывается и открывается заново.
+ */
+@Component
+public class CefEventWriter implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(CefEventWriter.class);
+
+    public enum FsyncPolicy { NONE, INTERVAL, EVERY_BATCH }
+
+    private record RotationRequest(Path target, CompletableFuture<Path> done) {}
+
+    private final Path file;
+    private final MpscRingBuffer<SecurityLog> ring;
+    private final int batchSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final ByteBuffer buffer;
+    private final CefEncoder cefEncoder = new CefEncoder();
+
+    private final Counter dropped;
+    private final Counter written;
+    private final Counter failed;
+    private final Timer writeLatency;
+    private final AtomicReference<RotationRequest> pendingRotation = new AtomicReference<>();
+
+    private FileChannel channel;
+    private Thread writer;
+    private volatile boolean running;
+    private long lastFsync;
+    private boolean unsynced;
+    // Событий в buffer, ещё не записанных в файл
+    private int buffered;
+
+    public CefEventWriter(MeterRegistry meterRegistry,
+                          @Value("${cef.writer.path:logs/cef.log}") String path,
+                          @Value("${cef.writer.capacity:65536}") int capacity,
+                          @Value("${cef.writer.batch-size:1024}") int batchSize,
+                          @Value("${cef.writer.buffer-bytes:262144}") int bufferBytes,
+                          @Value("${cef.writer.fsync:none}") String fsync,
+                          @Value("${cef.writer.fsync-interval-ms:1000}") long fsyncIntervalMs) {
+        this.file = Paths.get(path);
+        this.ring = new MpscRingBuffer<>(capacity);
+        this.batchSize = batchSize;
+        this.fsyncPolicy = FsyncPolicy.valueOf(fsync.trim().toUpperCase());
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMs);
+        this.buffer = ByteBuffer.allocateDirect(bufferBytes);
+
+        this.dropped = Counter.builder("cef.writer.dropped")
+                .description("CEF events dropped because the queue was full")
+                .register(meterRegistry);
+        this.written = Counter.builder("cef.writer.written")
+                .description("CEF events written to file")
+                .register(meterRegistry);
+        this.failed = Counter.builder("cef.writer.failed")
+                .description("CEF events lost because the file write failed")
+                .register(meterRegistry);
+        this.writeLatency = Timer.builder("cef.writer.write.latency")
+                .description("Time to write (and optionally fsync) one batch")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("cef.writer.queue.depth", ring, MpscRingBuffer::size)
+                .description("CEF events waiting to be written")
+                .register(meterRegistry);
+    }
+
+    // Вызывается из потоков запросов, не блокирует
+    public boolean publish(SecurityLog event) {
+        if (ring.offer(event)) {
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    // Переименовать текущий файл в target и продолжить писать в новый.
+    // Выполняется потоком-писателем, вызывающий только ждёт future
+    public CompletableFuture<Path> rotate(Path target) {
+        RotationRequest request = new RotationRequest(target, new CompletableFuture<>());
+        if (!running || !pendingRotation.compareAndSet(null, request)) {
+            request.done().completeExceptionally(new IllegalStateException("CEF writer is not ready for rotation"));
+            return request.done();
+        }
+        LockSupport.unpark(writer);
+        return request.done();
+    }
+
+    @Override
+    public void start() {
+        if (running) return;
+        try {
+            openChannel();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open CEF log " + file, e);
+        }
+        running = true;
+        lastFsync = System.nanoTime();
+        writer = new Thread(this::writeLoop, "cef-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!running) return;
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close CEF log {}", file, e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Останавливаемся после очереди приёма событий, чтобы записать и её хвост
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void writeLoop() {
+        while (running || !ring.isEmpty()) {
+            int drained = ring.drain(this::encode, batchSize);
+            flush();
+            RotationRequest rotation = pendingRotation.getAndSet(null);
+            if (rotation != null) {
+                rotateNow(rotation);
+            }
+            if (drained == 0) {
+                fsyncIdle();
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        flush();
+        RotationRequest rotation = pendingRotation.getAndSet(null);
+        if (rotation != null) {
+            rotation.done().completeExceptionally(new IllegalStateException("CEF writer stopped"));
+        }
+    }
+
+    private void rotateNow(RotationRequest request) {
+        try {
+            channel.force(false);
+            unsynced = false;
+            channel.close();
+            Files.move(file, request.target(), StandardCopyOption.ATOMIC_MOVE);
+            request.done().complete(request.target());
+        } catch (IOException | RuntimeException e) {
+            request.done().completeExceptionally(e);
+        }
+        try {
+            openChannel();
+        } catch (IOException e) {
+            log.error("Cannot reopen CEF log {} after rotation", file, e);
+        }
+    }
+
+    private void openChannel() throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void encode(SecurityLog event) {
+        cefEncoder.encode(event);
+        int size = cefEncoder.length() + 1;
+        if (buffer.remaining() < size) {
+            flush();
+            if (buffer.remaining() < size) {
+                log.warn("CEF event {} does not fit into write buffer ({} bytes)", event.getId(), size);
+                dropped.increment();
+                return;
+            }
+        }
+        cefEncoder.writeTo(buffer);
+        buffer.put((byte) '\n');
+        buffered++;
+    }
+
+    private void flush() {
+        if (buffer.position() == 0) return;
+        long start = System.nanoTime();
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            written.increment(buffered);
+            fsyncIfNeeded(start);
+        } catch (IOException e) {
+            log.error("Failed to write CEF batch to {}", file, e);
+            failed.increment(buffered);
+        } finally {
+            buffer.clear();
+            buffered = 0;
+        }
+        writeLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private void fsyncIfNeeded(long now) throws IOException {
+        switch (fsyncPolicy) {
+            case EVERY_BATCH -> channel.force(false);
+            case INTERVAL -> {
+                if (now - lastFsync >= fsyncIntervalNanos) {
+                    channel.force(false);
+                    lastFsync = now;
+                    unsynced = false;
+                } else {
+                    unsynced = true;
+                }
+            }
+            case NONE -> { }
+        }
+    }
+
+    // Хвост последней пачки не должен ждать fsync до следующего события
+    private void fsyncIdle() {
+        if (!unsynced || System.nanoTime() - lastFsync < fsyncIntervalNanos) return;
+        lastFsync = System.nanoTime();
+        try {
+            channel.force(false);
+            unsynced = false;
+        } catch (IOException e) {
+            log.error("Failed to fsync CEF log {}", file, e);
+        }
+    }
+}
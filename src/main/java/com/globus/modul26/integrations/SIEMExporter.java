@@ -1,15 +1,393 @@
 package com.globus.modul26.integrations;
 
 import com.globus.modul26.model.SecurityLog;
+import com.globus.modul26.util.CefEncoder;
+import com.globus.modul26.util.MpscRingBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Component;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Пересылка CEF-событий в SIEM по syslog (RFC 5424): TCP с октетным
+ * счётчиком (RFC 6587) или UDP (RFC 5426), siem.syslog.protocol.
+ * exportInCEF только кладёт событие в кольцевой буфер; поток-пересыльщик
+ * кодирует события и держит постоянное соединение. По TCP кадры пачки
+ * уходят одной записью, по UDP - датаграммой на сообщение.
+ * Пока коллектор недоступен, кадры копятся в ограниченном буфере
+ * (spill-max-bytes, при переполнении вытесняются самые старые), а
+ * переподключение идёт с экспоненциальной задержкой. Обрыв посреди пачки
+ * приводит к её повторной отправке: доставка "хотя бы один раз".
+ * Кадр длиннее предела датаграммы UDP не отправить никогда - он
+ * отбрасывается (siem.forward.dropped, reason=oversized).
+ * Если siem.syslog.enabled=false, пересылки нет: события пишутся только в
+ * лог siem.cef на уровне DEBUG (по умолчанию выключен, вызов ничего не стоит).
+ */
 @Component
-public class SIEMExporter {
+public class SIEMExporter implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(SIEMExporter.class);
+    private static final Logger cefLog = LoggerFactory.getLogger("siem.cef");
+
+    public enum Protocol { TCP, UDP }
+
+    private record Frame(byte[] bytes, long createdAtMillis) {}
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+    private static final int SEVERITY_WARNING = 4;
+    private static final int SEVERITY_INFO = 6;
+    // Максимальная полезная нагрузка датаграммы IPv4
+    static final int MAX_DATAGRAM_BYTES = 65_507;
+
+    // Для лога при выключенной пересылке: буфер свой на каждый поток
+    private static final ThreadLocal<CefEncoder> ENCODER = ThreadLocal.withInitial(CefEncoder::new);
+
+    private final boolean enabled;
+    private final Protocol protocol;
+    private final String host;
+    private final int port;
+    private final int facility;
+    private final String hostname;
+    private final String appName;
+    private final int batchSize;
+    private final int maxBatchBytes;
+    private final long spillMaxBytes;
+    private final int connectTimeoutMs;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final long shutdownTimeoutMs;
+
+    private final MpscRingBuffer<SecurityLog> ring;
+    private final CefEncoder encoder = new CefEncoder();
+    private final ByteArrayOutputStream frameBuffer = new ByteArrayOutputStream(1024);
+    private final Deque<Frame> pending = new ArrayDeque<>();
+    private long pendingBytes;
+    private byte[] batch;
+
+    private final Counter sent;
+    private final Counter droppedQueueFull;
+    private final Counter droppedSpillFull;
+    private final Counter droppedOversized;
+    private final Counter reconnects;
+    private final Timer lag;
+
+    private SocketChannel tcp;
+    private final ByteBuffer probe = ByteBuffer.allocate(512);
+    private DatagramSocket udp;
+    private Thread forwarder;
+    private volatile boolean running;
+    private final AtomicLong pendingBytesGauge = new AtomicLong();
+
+    public SIEMExporter(MeterRegistry meterRegistry,
+                        @Value("${siem.syslog.enabled:false}") boolean enabled,
+                        @Value("${siem.syslog.protocol:tcp}") String protocol,
+                        @Value("${siem.syslog.host:localhost}") String host,
+                        @Value("${siem.syslog.port:6514}") int port,
+                        @Value("${siem.syslog.facility:10}") int facility,
+                        @Value("${siem.syslog.app-name:modul26}") String appName,
+                        @Value("${siem.syslog.capacity:65536}") int capacity,
+                        @Value("${siem.syslog.batch-size:256}") int batchSize,
+                        @Value("${siem.syslog.max-batch-bytes:65536}") int maxBatchBytes,
+                        @Value("${siem.syslog.spill-max-bytes:67108864}") long spillMaxBytes,
+                        @Value("${siem.syslog.connect-timeout-ms:2000}") int connectTimeoutMs,
+                        @Value("${siem.syslog.backoff-initial-ms:200}") long initialBackoffMs,
+                        @Value("${siem.syslog.backoff-max-ms:30000}") long maxBackoffMs,
+                        @Value("${siem.syslog.shutdown-timeout-ms:5000}") long shutdownTimeoutMs) {
+        this.enabled = enabled;
+        this.protocol = Protocol.valueOf(protocol.trim().toUpperCase());
+        this.host = host;
+        this.port = port;
+        this.facility = facility;
+        this.hostname = printable(localHostname());
+        this.appName = printable(appName);
+        this.batchSize = batchSize;
+        this.maxBatchBytes = maxBatchBytes;
+        this.spillMaxBytes = spillMaxBytes;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.ring = new MpscRingBuffer<>(capacity);
+
+        this.sent = Counter.builder("siem.forward.sent")
+                .description("Syslog messages delivered to the collector")
+                .register(meterRegistry);
+        this.droppedQueueFull = Counter.builder("siem.forward.dropped")
+                .tag("reason", "queue_full")
+                .description("Events dropped before forwarding")
+                .register(meterRegistry);
+        this.droppedSpillFull = Counter.builder("siem.forward.dropped")
+                .tag("reason", "spill_full")
+                .description("Events dropped before forwarding")
+                .register(meterRegistry);
+        this.droppedOversized = Counter.builder("siem.forward.dropped")
+                .tag("reason", "oversized")
+                .description("Events dropped before forwarding")
+                .register(meterRegistry);
+        this.reconnects = Counter.builder("siem.forward.reconnects")
+                .description("Connections (re)established to the syslog collector")
+                .register(meterRegistry);
+        this.lag = Timer.builder("siem.forward.lag")
+                .description("Time from event creation to delivery to the collector")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("siem.forward.queue.depth", ring, MpscRingBuffer::size)
+                .description("Events waiting to be encoded for forwarding")
+                .register(meterRegistry);
+        Gauge.builder("siem.forward.spill.bytes", pendingBytesGauge, AtomicLong::get)
+                .description("Encoded syslog frames waiting for the collector")
+                .register(meterRegistry);
+    }
+
+    // Вызывается из потоков запросов, не блокирует
     public void exportInCEF(SecurityLog event) {
-        // Преобразуй событие в формат CEF
-        String cef = String.format("CEF:0|Globus|modul26|1.0|%s|%s|severity| eventId=%d src=%s",
-                event.getEventType(), event.getDeviceInfo(), event.getId(), event.getIpAddress());
+        if (!enabled) {
+            if (cefLog.isDebugEnabled()) {
+                cefLog.debug("SIEM CEF: {}", ENCODER.get().encode(event).toString());
+            }
+            return;
+        }
+        if (!ring.offer(event)) {
+            droppedQueueFull.increment();
+        }
+    }
+
+    @Override
+    public void start() {
+        if (running || !enabled) return;
+        batch = new byte[maxBatchBytes];
+        running = true;
+        forwarder = new Thread(this::forwardLoop, "siem-forwarder");
+        forwarder.setDaemon(true);
+        forwarder.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!running) return;
+        running = false;
+        LockSupport.unpark(forwarder);
+        try {
+            forwarder.join(shutdownTimeoutMs + TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Останавливаемся вместе с CefEventWriter - после очереди приёма событий
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void forwardLoop() {
+        long backoff = initialBackoffMs;
+        long deadline = Long.MAX_VALUE;
+        while (true) {
+            if (!running && deadline == Long.MAX_VALUE) {
+                deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMs);
+            }
+            int drained = ring.drain(this::enqueue, batchSize);
+            boolean idle = drained == 0 && pending.isEmpty();
+            if (!running && (idle || System.nanoTime() > deadline)) break;
+
+            if (!pending.isEmpty()) {
+                try {
+                    connectIfNeeded();
+                    sendPending();
+                    backoff = initialBackoffMs;
+                } catch (IOException e) {
+                    log.warn("Syslog collector {}:{} unavailable, {} bytes buffered, retry in {} ms",
+                            host, port, pendingBytes, backoff);
+                    disconnect();
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoff));
+                    backoff = Math.min(backoff * 2, maxBackoffMs);
+                    continue;
+                }
+            }
+            if (idle) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        if (!pending.isEmpty()) {
+            log.warn("SIEM forwarder stopped with {} undelivered messages", pending.size());
+        }
+        disconnect();
+    }
+
+    private void enqueue(SecurityLog event) {
+        Frame frame = frame(event);
+        pending.addLast(frame);
+        pendingBytes += frame.bytes().length;
+        while (pendingBytes > spillMaxBytes && pending.size() > 1) {
+            pendingBytes -= pending.removeFirst().bytes().length;
+            droppedSpillFull.increment();
+        }
+        pendingBytesGauge.set(pendingBytes);
+    }
+
+    // <PRI>1 TIMESTAMP HOSTNAME APP-NAME PROCID MSGID SD MSG, для TCP с префиксом длины
+    private Frame frame(SecurityLog event) {
+        LocalDateTime createdAt = event.getCreatedAt() != null ? event.getCreatedAt() : LocalDateTime.now();
+        int severity = Boolean.TRUE.equals(event.getIsSuspicious()) ? SEVERITY_WARNING : SEVERITY_INFO;
+        byte[] header = ("<" + (facility * 8 + severity) + ">1 "
+                + TIMESTAMP.format(createdAt.atZone(ZoneId.systemDefault())) + " "
+                + hostname + " " + appName + " - CEF - ").getBytes(StandardCharsets.US_ASCII);
+        encoder.encode(event);
+
+        frameBuffer.reset();
+        if (protocol == Protocol.TCP) {
+            int length = header.length + encoder.length();
+            frameBuffer.writeBytes((length + " ").getBytes(StandardCharsets.US_ASCII));
+        }
+        frameBuffer.writeBytes(header);
+        try {
+            encoder.writeTo(frameBuffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long createdAtMillis = createdAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return new Frame(frameBuffer.toByteArray(), createdAtMillis);
+    }
+
+    private void connectIfNeeded() throws IOException {
+        if (protocol == Protocol.TCP && tcp == null) {
+            SocketChannel channel = SocketChannel.open();
+            try {
+                channel.socket().setTcpNoDelay(true);
+                channel.socket().setKeepAlive(true);
+                channel.socket().connect(new InetSocketAddress(host, port), connectTimeoutMs);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            tcp = channel;
+            reconnects.increment();
+            log.info("Connected to syslog collector {}:{} (tcp)", host, port);
+        } else if (protocol == Protocol.UDP && udp == null) {
+            DatagramSocket socket = new DatagramSocket();
+            socket.connect(new InetSocketAddress(host, port));
+            udp = socket;
+            reconnects.increment();
+        }
+    }
+
+    // Кадр удаляется из очереди только после успешной отправки
+    private void sendPending() throws IOException {
+        while (!pending.isEmpty()) {
+            if (protocol == Protocol.TCP) {
+                int length = 0;
+                int count = 0;
+                for (Frame frame : pending) {
+                    byte[] bytes = frame.bytes();
+                    if (count > 0 && length + bytes.length > batch.length) break;
+                    if (bytes.length > batch.length) {
+                        batch = new byte[bytes.length];
+                    }
+                    System.arraycopy(bytes, 0, batch, length, bytes.length);
+                    length += bytes.length;
+                    count++;
+                }
+                ensureOpen();
+                ByteBuffer out = ByteBuffer.wrap(batch, 0, length);
+                while (out.hasRemaining()) {
+                    tcp.write(out);
+                }
+                for (int i = 0; i < count; i++) {
+                    delivered(pending.removeFirst());
+                }
+            } else {
+                Frame frame = pending.peekFirst();
+                if (frame.bytes().length > MAX_DATAGRAM_BYTES) {
+                    pendingBytes -= pending.removeFirst().bytes().length;
+                    pendingBytesGauge.set(pendingBytes);
+                    droppedOversized.increment();
+                    continue;
+                }
+                udp.send(new DatagramPacket(frame.bytes(), frame.bytes().length));
+                delivered(pending.removeFirst());
+            }
+        }
+    }
+
+    // Коллектор ничего не шлёт в ответ, поэтому EOF на чтении - закрытое им
+    // соединение. Без этой проверки запись в полузакрытый сокет "успешна",
+    // и пачка теряется
+    private void ensureOpen() throws IOException {
+        tcp.configureBlocking(false);
+        try {
+            probe.clear();
+            if (tcp.read(probe) < 0) {
+                throw new IOException("Connection closed by syslog collector");
+            }
+        } finally {
+            tcp.configureBlocking(true);
+        }
+    }
+
+    private void delivered(Frame frame) {
+        pendingBytes -= frame.bytes().length;
+        pendingBytesGauge.set(pendingBytes);
+        sent.increment();
+        lag.record(Math.max(0, System.currentTimeMillis() - frame.createdAtMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    private void disconnect() {
+        try {
+            if (tcp != null) tcp.close();
+        } catch (IOException e) {
+            log.debug("Failed to close syslog connection", e);
+        }
+        if (udp != null) udp.close();
+        tcp = null;
+        udp = null;
+    }
+
+    private static String localHostname() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "-";
+        }
+    }
 
-        System.out.println("SIEM CEF: " + cef);
+    // Поля заголовка syslog - только печатные ASCII без пробелов
+    private static String printable(String value) {
+        if (value == null || value.isEmpty()) return "-";
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            sb.append(c > 32 && c < 127 ? c : '_');
+        }
+        return sb.toString();
     }
-}
\ No newline at end of file
+}
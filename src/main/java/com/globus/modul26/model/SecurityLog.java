@@ -1,14 +1,18 @@
 package com.globus.modul26.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.globus.modul26.repository.SecurityLogDictionaryListener;
 import com.vladmihalcea.hibernate.type.json.JsonType;
 import org.hibernate.annotations.Type;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 @Entity
 @Table(name = "security_logs")
+@EntityListeners(SecurityLogDictionaryListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -35,10 +39,40 @@ public class SecurityLog {
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
+    // Только свободные ключи; country/city/platform/browser - в полях ниже
     @Type(JsonType.class)
     @Column(name = "metadata", columnDefinition = "jsonb")
     private Map<String, Object> metadata;
 
+    // Горячие ключи metadata: в БД - id словарей (MetadataDictionary), в памяти и JSON - строки
+    @Transient
+    private String country;
+
+    @Transient
+    private String city;
+
+    @Transient
+    private String platform;
+
+    @Transient
+    private String browser;
+
+    @JsonIgnore
+    @Column(name = "country_id")
+    private Integer countryId;
+
+    @JsonIgnore
+    @Column(name = "city_id")
+    private Integer cityId;
+
+    @JsonIgnore
+    @Column(name = "platform_id")
+    private Integer platformId;
+
+    @JsonIgnore
+    @Column(name = "browser_id")
+    private Integer browserId;
+
     @Column(name = "biometry_used")
     private Boolean biometryUsed;
 
@@ -46,6 +80,11 @@ public class SecurityLog {
     @Column(name = "is_suspicious", nullable = false)
     private Boolean isSuspicious = false;
 
+    // Сработавшие правила детектора (для suspicious_events); не хранится и не сериализуется
+    @Transient
+    @JsonIgnore
+    private List<String> firedRules;
+
     @PrePersist
     public void prePersist() {
         handleNulls();
@@ -56,6 +95,23 @@ public class SecurityLog {
         handleNulls();
     }
 
+    // Перенести горячие ключи, пришедшие в metadata (старый формат запросов), в типизированные поля
+    public void promoteHotKeys() {
+        if (metadata == null) return;
+        country = promote("country", country);
+        city = promote("city", city);
+        platform = promote("platform", platform);
+        browser = promote("browser", browser);
+        if (metadata.isEmpty()) {
+            metadata = null;
+        }
+    }
+
+    private String promote(String key, String current) {
+        Object value = metadata.remove(key);
+        return current != null || value == null ? current : value.toString();
+    }
+
     private void handleNulls() {
         if (this.createdAt == null) {
             this.createdAt = LocalDateTime.now();
@@ -0,0 +1,24 @@
+package com.globus.modul26.repository;
+
+// Результат SecurityLogRepository.findDetectionSignals: все сигналы детектора,
+// которые зависят от истории пользователя, одной строкой
+public interface DetectionSignals {
+
+    Boolean getIpSeen();
+
+    Boolean getGeoSeen();
+
+    Boolean getDeviceSeen();
+
+    // в истории больше одного разного device_info
+    Boolean getMultipleDevices();
+
+    Boolean getPlatformBrowserSeen();
+
+    Boolean getBiometryUsed();
+
+    // неудачные LOGIN_ATTEMPT после failuresSince и после последнего успешного входа
+    Long getRecentFailures();
+
+    Long getRecentPasswordChanges();
+}
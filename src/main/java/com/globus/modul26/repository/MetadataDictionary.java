@@ -0,0 +1,133 @@
+package com.globus.modul26.repository;
+
+import com.globus.modul26.model.SecurityLog;
+import jakarta.annotation.PostConstruct;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Словари горячих ключей metadata (V7__metadata_dictionaries.sql):
+ * значение <-> целочисленный id. Оба направления кэшируются в памяти
+ * навсегда - словари маленькие (страны, города, платформы, браузеры), а
+ * id не меняются. Строки интернируются: все события с одной страной
+ * ссылаются на один экземпляр String.
+ *
+ * Словари целиком загружаются при старте, поэтому запись события обычно
+ * не обращается к БД. Новое значение добавляется в транзакции вызывающего
+ * (тем же соединением, без второго из пула) и попадает в кэш только после
+ * её фиксации.
+ */
+@Repository
+public class MetadataDictionary {
+
+    public enum Kind {
+        COUNTRY("dict_countries"),
+        CITY("dict_cities"),
+        PLATFORM("dict_platforms"),
+        BROWSER("dict_browsers");
+
+        private final String table;
+
+        Kind(String table) {
+            this.table = table;
+        }
+    }
+
+    static final int MAX_VALUE_LENGTH = 255;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Kind, Map<String, Integer>> ids = new EnumMap<>(Kind.class);
+    private final Map<Kind, Map<Integer, String>> values = new EnumMap<>(Kind.class);
+
+    public MetadataDictionary(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        for (Kind kind : Kind.values()) {
+            ids.put(kind, new ConcurrentHashMap<>());
+            values.put(kind, new ConcurrentHashMap<>());
+        }
+    }
+
+    // Весь словарь в кэш до приёма трафика
+    @PostConstruct
+    public void preload() {
+        for (Kind kind : Kind.values()) {
+            jdbcTemplate.query("SELECT id, value FROM " + kind.table,
+                    rs -> { remember(kind, rs.getInt("id"), rs.getString("value")); });
+        }
+    }
+
+    // Строки -> id перед записью события (горячие ключи из metadata переносятся в поля)
+    public void encode(SecurityLog log) {
+        log.promoteHotKeys();
+        log.setCountryId(idOf(Kind.COUNTRY, log.getCountry()));
+        log.setCityId(idOf(Kind.CITY, log.getCity()));
+        log.setPlatformId(idOf(Kind.PLATFORM, log.getPlatform()));
+        log.setBrowserId(idOf(Kind.BROWSER, log.getBrowser()));
+    }
+
+    // id -> строки после загрузки события
+    public void decode(SecurityLog log) {
+        log.setCountry(valueOf(Kind.COUNTRY, log.getCountryId()));
+        log.setCity(valueOf(Kind.CITY, log.getCityId()));
+        log.setPlatform(valueOf(Kind.PLATFORM, log.getPlatformId()));
+        log.setBrowser(valueOf(Kind.BROWSER, log.getBrowserId()));
+    }
+
+    // id значения; новое значение добавляется в словарь (для записи события)
+    public Integer idOf(Kind kind, String value) {
+        if (value == null) return null;
+        String key = bounded(value);
+        Integer id = ids.get(kind).get(key);
+        if (id != null) return id;
+
+        List<Integer> inserted = jdbcTemplate.queryForList(
+                "INSERT INTO " + kind.table + " (value) VALUES (?) ON CONFLICT (value) DO NOTHING RETURNING id",
+                Integer.class, key);
+        Integer resolved = inserted.isEmpty()
+                ? jdbcTemplate.queryForObject("SELECT id FROM " + kind.table + " WHERE value = ?", Integer.class, key)
+                : inserted.get(0);
+
+        // При откате внешней транзакции строки словаря не останется - в кэш только после фиксации
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remember(kind, resolved, key);
+                }
+            });
+        } else {
+            remember(kind, resolved, key);
+        }
+        return resolved;
+    }
+
+    // Значение по id (для загруженных строк); интернированный экземпляр из кэша
+    public String valueOf(Kind kind, Integer id) {
+        if (id == null) return null;
+        String value = values.get(kind).get(id);
+        if (value != null) return value;
+
+        List<String> found = jdbcTemplate.queryForList(
+                "SELECT value FROM " + kind.table + " WHERE id = ?", String.class, id);
+        if (found.isEmpty()) return null;
+        return remember(kind, id, found.get(0));
+    }
+
+    private String remember(Kind kind, Integer id, String value) {
+        String canonical = values.get(kind).putIfAbsent(id, value);
+        if (canonical == null) canonical = value;
+        ids.get(kind).putIfAbsent(canonical, id);
+        return canonical;
+    }
+
+    private static String bounded(String value) {
+        return value.length() > MAX_VALUE_LENGTH ? value.substring(0, MAX_VALUE_LENGTH) : value;
+    }
+}
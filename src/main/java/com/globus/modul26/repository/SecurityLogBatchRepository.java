@@ -0,0 +1,81 @@
+package com.globus.modul26.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.globus.modul26.model.SecurityLog;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пакетная запись security_logs одним многострочным INSERT вместо
+ * отдельного save на каждое событие. id выделяются из security_logs_id_seq
+ * до вставки и проставляются в события.
+ */
+@Repository
+public class SecurityLogBatchRepository {
+
+    private static final String INSERT_PREFIX = "INSERT INTO security_logs "
+            + "(id_int, user_id, event_type, ip_address, device_info, created_at, metadata, "
+            + "country_id, city_id, platform_id, browser_id, biometry_used, is_suspicious) VALUES ";
+    private static final String ROW_VALUES = "(?, ?, ?, ?, ?, ?, ?::jsonb, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MetadataDictionary dictionary;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public SecurityLogBatchRepository(JdbcTemplate jdbcTemplate, MetadataDictionary dictionary) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dictionary = dictionary;
+    }
+
+    public int insertAll(List<SecurityLog> logs) {
+        if (logs.isEmpty()) return 0;
+
+        // id берутся из последовательности заранее: порядок строк RETURNING Postgres не гарантирует,
+        // а id нужны дальше (проекция suspicious_events, CEF)
+        List<Integer> ids = jdbcTemplate.queryForList(
+                "SELECT nextval('security_logs_id_seq')::int FROM generate_series(1, ?)", Integer.class, logs.size());
+
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + logs.size() * (ROW_VALUES.length() + 2));
+        sql.append(INSERT_PREFIX);
+        List<Object> args = new ArrayList<>(logs.size() * 13);
+        for (int i = 0; i < logs.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(ROW_VALUES);
+
+            SecurityLog log = logs.get(i);
+            dictionary.encode(log);
+            args.add(ids.get(i));
+            args.add(log.getUserId());
+            args.add(log.getEventType());
+            args.add(log.getIpAddress());
+            args.add(log.getDeviceInfo());
+            args.add(Timestamp.valueOf(log.getCreatedAt()));
+            args.add(toJson(log));
+            args.add(log.getCountryId());
+            args.add(log.getCityId());
+            args.add(log.getPlatformId());
+            args.add(log.getBrowserId());
+            args.add(log.getBiometryUsed());
+            args.add(Boolean.TRUE.equals(log.getIsSuspicious()));
+        }
+        int inserted = jdbcTemplate.update(sql.toString(), args.toArray());
+        for (int i = 0; i < logs.size(); i++) {
+            logs.get(i).setId(ids.get(i));
+        }
+        return inserted;
+    }
+
+    private String toJson(SecurityLog log) {
+        if (log.getMetadata() == null) return null;
+        try {
+            return objectMapper.writeValueAsString(log.getMetadata());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Ошибка сериализации metadata", e);
+        }
+    }
+}
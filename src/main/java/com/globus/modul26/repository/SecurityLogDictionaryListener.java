@@ -0,0 +1,30 @@
+package com.globus.modul26.repository;
+
+import com.globus.modul26.model.SecurityLog;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import org.springframework.stereotype.Component;
+
+// Перевод горячих ключей SecurityLog в id словарей и обратно на пути JPA
+// (экземпляр создаёт Spring: Hibernate берёт слушателей из контекста)
+@Component
+public class SecurityLogDictionaryListener {
+
+    private final MetadataDictionary dictionary;
+
+    public SecurityLogDictionaryListener(MetadataDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void encode(SecurityLog log) {
+        dictionary.encode(log);
+    }
+
+    @PostLoad
+    public void decode(SecurityLog log) {
+        dictionary.decode(log);
+    }
+}
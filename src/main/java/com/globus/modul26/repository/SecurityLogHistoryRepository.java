@@ -0,0 +1,136 @@
+package com.globus.modul26.repository;
+
+import com.globus.modul26.dto.SecurityLogView;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * История событий пользователя keyset-страницами по (created_at, id_int)
+ * от новых к старым (индекс idx_security_logs_user_created_id). Читаются
+ * только запрошенные колонки; created_at и id_int выбираются всегда - из них
+ * строится курсор. stream() идёт по серверному курсору Postgres (fetchSize в
+ * транзакции), так что в памяти одновременно не больше fetch-size строк.
+ */
+@Repository
+public class SecurityLogHistoryRepository {
+
+    public enum Field {
+        ID("id", "id_int"),
+        USER_ID("userId", "user_id"),
+        EVENT_TYPE("eventType", "event_type"),
+        IP_ADDRESS("ipAddress", "ip_address"),
+        DEVICE_INFO("deviceInfo", "device_info"),
+        CREATED_AT("createdAt", "created_at"),
+        METADATA("metadata", "metadata"),
+        COUNTRY("country", "country_id"),
+        CITY("city", "city_id"),
+        PLATFORM("platform", "platform_id"),
+        BROWSER("browser", "browser_id"),
+        BIOMETRY_USED("biometryUsed", "biometry_used"),
+        IS_SUSPICIOUS("isSuspicious", "is_suspicious");
+
+        private final String property;
+        private final String column;
+
+        Field(String property, String column) {
+            this.property = property;
+            this.column = column;
+        }
+
+        public String property() {
+            return property;
+        }
+
+        // Имя поля JSON (как в SecurityLog) -> Field
+        public static Field of(String property) {
+            for (Field field : values()) {
+                if (field.property.equalsIgnoreCase(property.trim())) return field;
+            }
+            throw new IllegalArgumentException("Unknown field: " + property);
+        }
+    }
+
+    // Позиция в истории: строки строго старше (createdAt, id)
+    public record Cursor(LocalDateTime createdAt, int id) {}
+
+    // Строка истории и её позиция для следующего курсора
+    public record Row(SecurityLogView view, Cursor position) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MetadataDictionary dictionary;
+
+    public SecurityLogHistoryRepository(JdbcTemplate jdbcTemplate, MetadataDictionary dictionary) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dictionary = dictionary;
+    }
+
+    public List<Row> page(Long userId, Cursor after, int limit, Set<Field> fields) {
+        String sql = select(fields, after != null) + " LIMIT ?";
+        RowMapper<Row> mapper = (rs, i) -> map(rs, fields);
+        return after != null
+                ? jdbcTemplate.query(sql, mapper, userId, Timestamp.valueOf(after.createdAt()), after.id(), limit)
+                : jdbcTemplate.query(sql, mapper, userId, limit);
+    }
+
+    // Вызывать внутри транзакции: без неё драйвер Postgres игнорирует fetchSize и читает всё сразу
+    public void stream(Long userId, Cursor after, Set<Field> fields, int fetchSize, Consumer<Row> sink) {
+        String sql = select(fields, after != null);
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setLong(1, userId);
+            if (after != null) {
+                ps.setTimestamp(2, Timestamp.valueOf(after.createdAt()));
+                ps.setInt(3, after.id());
+            }
+            return ps;
+        }, (ResultSet rs) -> {
+            sink.accept(map(rs, fields));
+        });
+    }
+
+    private static String select(Set<Field> fields, boolean withCursor) {
+        Set<Field> columns = EnumSet.of(Field.ID, Field.CREATED_AT);
+        columns.addAll(fields);
+        return "SELECT " + columns.stream().map(f -> f.column).collect(Collectors.joining(", "))
+                + " FROM security_logs WHERE user_id = ?"
+                + (withCursor ? " AND (created_at, id_int) < (?, ?)" : "")
+                + " ORDER BY created_at DESC, id_int DESC";
+    }
+
+    private Row map(ResultSet rs, Set<Field> fields) throws SQLException {
+        int id = rs.getInt("id_int");
+        LocalDateTime createdAt = rs.getTimestamp("created_at").toLocalDateTime();
+        SecurityLogView view = new SecurityLogView(
+                fields.contains(Field.ID) ? id : null,
+                fields.contains(Field.USER_ID) ? rs.getLong("user_id") : null,
+                fields.contains(Field.EVENT_TYPE) ? rs.getString("event_type") : null,
+                fields.contains(Field.IP_ADDRESS) ? rs.getString("ip_address") : null,
+                fields.contains(Field.DEVICE_INFO) ? rs.getString("device_info") : null,
+                fields.contains(Field.CREATED_AT) ? createdAt : null,
+                fields.contains(Field.METADATA) ? rs.getString("metadata") : null,
+                fields.contains(Field.COUNTRY) ? decode(MetadataDictionary.Kind.COUNTRY, rs, "country_id") : null,
+                fields.contains(Field.CITY) ? decode(MetadataDictionary.Kind.CITY, rs, "city_id") : null,
+                fields.contains(Field.PLATFORM) ? decode(MetadataDictionary.Kind.PLATFORM, rs, "platform_id") : null,
+                fields.contains(Field.BROWSER) ? decode(MetadataDictionary.Kind.BROWSER, rs, "browser_id") : null,
+                fields.contains(Field.BIOMETRY_USED) ? (Boolean) rs.getObject("biometry_used") : null,
+                fields.contains(Field.IS_SUSPICIOUS) ? rs.getBoolean("is_suspicious") : null);
+        return new Row(view, new Cursor(createdAt, id));
+    }
+
+    private String decode(MetadataDictionary.Kind kind, ResultSet rs, String column) throws SQLException {
+        return dictionary.valueOf(kind, (Integer) rs.getObject(column));
+    }
+}
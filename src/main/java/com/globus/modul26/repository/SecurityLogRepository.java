@@ -1,7 +1,10 @@
 package com.globus.modul26.repository;
 
 import com.globus.modul26.model.SecurityLog;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -17,9 +20,71 @@ public interface SecurityLogRepository extends JpaRepository<SecurityLog, Intege
 
     List<SecurityLog> findByUserId(Long userId);
 
+    // Догрузка событий после covered_id компактного профиля
+    List<SecurityLog> findByUserIdAndIdGreaterThan(Long userId, Integer afterId);
+
 
     List<SecurityLog> findByUserIdAndIsSuspiciousTrue(Long userId);
 
 
     List<SecurityLog> findTop3ByUserIdAndEventTypeOrderByCreatedAtDesc(Long userId, String eventType);
+
+    // Нижняя граница created_at нужна, чтобы планировщик отсекал старые секции
+    List<SecurityLog> findByUserIdAndEventTypeAndCreatedAtAfterOrderByCreatedAtDesc(Long userId, String eventType,
+                                                                                   LocalDateTime after, Pageable pageable);
+
+    // Keyset-пагинация по id: следующая страница начинается после последнего id
+    List<SecurityLog> findByIsSuspiciousTrueAndIdGreaterThanOrderByIdAsc(Integer afterId, Pageable pageable);
+
+    List<SecurityLog> findByIdBetweenOrderByIdAsc(Integer fromId, Integer toId);
+
+    @Query("select max(l.id) from SecurityLog l")
+    Integer findMaxId();
+
+    // Все исторические сигналы для одного события за один запрос.
+    // Каждый подзапрос идёт по индексу из V3__partition_security_logs.sql (гео - V8, по id словарей);
+    // оконные подзапросы ограничены по created_at и читают только свежие секции
+    @Query(value = """
+            SELECT
+              EXISTS (SELECT 1 FROM security_logs l
+                      WHERE l.user_id = :userId AND l.ip_address = :ip) AS "ipSeen",
+              EXISTS (SELECT 1 FROM security_logs l
+                      WHERE l.user_id = :userId
+                        AND l.country_id = (SELECT d.id FROM dict_countries d WHERE d.value = :country)
+                        AND l.city_id = (SELECT d.id FROM dict_cities d WHERE d.value = :city)) AS "geoSeen",
+              EXISTS (SELECT 1 FROM security_logs l
+                      WHERE l.user_id = :userId AND l.device_info = :device) AS "deviceSeen",
+              EXISTS (SELECT 1 FROM security_logs l
+                      WHERE l.user_id = :userId AND l.device_info IS NOT NULL
+                        AND l.device_info <> (SELECT f.device_info FROM security_logs f
+                                              WHERE f.user_id = :userId AND f.device_info IS NOT NULL
+                                              LIMIT 1)) AS "multipleDevices",
+              EXISTS (SELECT 1 FROM security_logs l
+                      WHERE l.user_id = :userId
+                        AND coalesce(l.platform_id, 0) = CASE WHEN :platform = '' THEN 0 ELSE
+                            coalesce((SELECT d.id FROM dict_platforms d WHERE d.value = :platform), -1) END
+                        AND coalesce(l.browser_id, 0) = CASE WHEN :browser = '' THEN 0 ELSE
+                            coalesce((SELECT d.id FROM dict_browsers d WHERE d.value = :browser), -1) END) AS "platformBrowserSeen",
+              EXISTS (SELECT 1 FROM security_logs l
+                      WHERE l.user_id = :userId AND l.biometry_used) AS "biometryUsed",
+              (SELECT count(*) FROM security_logs l
+               WHERE l.user_id = :userId AND l.event_type = 'LOGIN_ATTEMPT' AND l.is_suspicious
+                 AND l.created_at > :failuresSince
+                 AND l.created_at > coalesce((SELECT max(s.created_at) FROM security_logs s
+                                              WHERE s.user_id = :userId AND s.event_type = 'LOGIN_ATTEMPT'
+                                                AND NOT s.is_suspicious
+                                                AND s.created_at > :failuresSince), '-infinity')) AS "recentFailures",
+              (SELECT count(*) FROM security_logs l
+               WHERE l.user_id = :userId AND l.event_type = 'PASSWORD_CHANGE'
+                 AND l.created_at > :passwordChangesSince) AS "recentPasswordChanges"
+            """, nativeQuery = true)
+    DetectionSignals findDetectionSignals(@Param("userId") Long userId,
+                                          @Param("ip") String ip,
+                                          @Param("country") String country,
+                                          @Param("city") String city,
+                                          @Param("device") String device,
+                                          @Param("platform") String platform,
+                                          @Param("browser") String browser,
+                                          @Param("failuresSince") LocalDateTime failuresSince,
+                                          @Param("passwordChangesSince") LocalDateTime passwordChangesSince);
 }
\ No newline at end of file
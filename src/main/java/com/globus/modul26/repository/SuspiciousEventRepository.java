@@ -0,0 +1,129 @@
+package com.globus.modul26.repository;
+
+import com.globus.modul26.dto.SuspiciousEvent;
+import com.globus.modul26.model.SecurityLog;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Проекция suspicious_events (V5__suspicious_events.sql): компактная копия
+ * подозрительных событий с id сработавших правил. Пишется при записи
+ * события, читается keyset-страницами по (user_id, log_id).
+ */
+@Repository
+public class SuspiciousEventRepository {
+
+    private static final String INSERT = """
+            INSERT INTO suspicious_events (log_id, user_id, created_at, event_type, ip_address, country, rule_ids)
+            VALUES (?, ?, ?, ?, ?, ?, string_to_array(?, ','))
+            ON CONFLICT (log_id) DO NOTHING
+            """;
+
+    private static final String FIND_BY_USER = """
+            SELECT log_id, user_id, event_type, ip_address, country, created_at,
+                   array_to_string(rule_ids, ',') AS rules
+            FROM suspicious_events
+            WHERE user_id = ? AND log_id > ?
+            ORDER BY log_id
+            LIMIT ?
+            """;
+
+    // Строки, чьих событий больше нет или они больше не подозрительны
+    private static final String DELETE_STALE = """
+            DELETE FROM suspicious_events e
+            WHERE NOT EXISTS (SELECT 1 FROM security_logs l
+                              WHERE l.id_int = e.log_id AND l.created_at = e.created_at AND l.is_suspicious)
+            """;
+
+    private static final String INSERT_MISSING = """
+            INSERT INTO suspicious_events (log_id, user_id, created_at, event_type, ip_address, country)
+            SELECT l.id_int, l.user_id, l.created_at, l.event_type, l.ip_address, left(c.value, 64)
+            FROM security_logs l
+            LEFT JOIN dict_countries c ON c.id = l.country_id
+            WHERE l.is_suspicious
+            ON CONFLICT (log_id) DO NOTHING
+            """;
+
+    private static final RowMapper<SuspiciousEvent> ROW_MAPPER = (rs, i) -> {
+        String rules = rs.getString("rules");
+        return new SuspiciousEvent(
+                rs.getInt("log_id"),
+                rs.getLong("user_id"),
+                rs.getString("event_type"),
+                rs.getString("ip_address"),
+                rs.getString("country"),
+                rs.getTimestamp("created_at").toLocalDateTime(),
+                rules == null || rules.isEmpty() ? List.of() : Arrays.asList(rules.split(",")));
+    };
+
+    public record RebuildResult(int removed, int added) {}
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SuspiciousEventRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Внутри транзакции записи события - на её соединении через JDBC-точку сохранения:
+    // ошибка проекции откатывает только её строку, а не само событие (rebuild() догонит позже).
+    // PROPAGATION_NESTED здесь не годится: HibernateJpaDialect точек сохранения не поддерживает
+    public void append(SecurityLog log, List<String> ruleIds) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+                insert(con, log, ruleIds);
+                return null;
+            }
+            Savepoint savepoint = con.setSavepoint();
+            try {
+                insert(con, log, ruleIds);
+            } catch (SQLException | RuntimeException e) {
+                con.rollback(savepoint);
+                throw e;
+            }
+            con.releaseSavepoint(savepoint);
+            return null;
+        });
+    }
+
+    private static void insert(Connection con, SecurityLog log, List<String> ruleIds) throws SQLException {
+        String countryText = log.getCountry();
+        if (countryText != null && countryText.length() > 64) countryText = countryText.substring(0, 64);
+        try (PreparedStatement ps = con.prepareStatement(INSERT)) {
+            ps.setObject(1, log.getId());
+            ps.setObject(2, log.getUserId());
+            ps.setTimestamp(3, Timestamp.valueOf(log.getCreatedAt()));
+            ps.setString(4, log.getEventType());
+            ps.setString(5, log.getIpAddress());
+            ps.setString(6, countryText);
+            ps.setString(7, ruleIds != null ? String.join(",", ruleIds) : "");
+            ps.executeUpdate();
+        }
+    }
+
+    public List<SuspiciousEvent> findByUser(Long userId, int afterLogId, int limit) {
+        return jdbcTemplate.query(FIND_BY_USER, ROW_MAPPER, userId, afterLogId, limit);
+    }
+
+    // Сверка с историей; правила для добавленных строк неизвестны (профиль на момент события не восстановить)
+    public RebuildResult rebuild() {
+        int removed = jdbcTemplate.update(DELETE_STALE);
+        int added = jdbcTemplate.update(INSERT_MISSING);
+        return new RebuildResult(removed, added);
+    }
+
+    public int deleteBefore(LocalDateTime border) {
+        return jdbcTemplate.update("DELETE FROM suspicious_events WHERE created_at < ?", Timestamp.valueOf(border));
+    }
+}
@@ -0,0 +1,58 @@
+package com.globus.modul26.repository;
+
+import com.globus.modul26.model.User;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Пакетная запись users одним многострочным INSERT. Конфликты по
+ * uk_users_username / uk_users_email не прерывают пачку: такие строки
+ * пропускаются (ON CONFLICT DO NOTHING), вызывающий узнаёт их по отсутствию
+ * в RETURNING.
+ */
+@Repository
+public class UserBatchRepository {
+
+    private static final String INSERT_PREFIX = "INSERT INTO users "
+            + "(username, password, email, first_name, last_name, phone, role, locked, created_at, failed_login_attempts) VALUES ";
+    private static final String ROW_VALUES = "(?, ?, ?, ?, ?, ?, ?, FALSE, ?, 0)";
+    private static final String INSERT_SUFFIX = " ON CONFLICT DO NOTHING RETURNING username";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Возвращает username вставленных строк
+    public Set<String> insertAll(List<User> users) {
+        if (users.isEmpty()) return Set.of();
+
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + INSERT_SUFFIX.length()
+                + users.size() * (ROW_VALUES.length() + 2));
+        sql.append(INSERT_PREFIX);
+        List<Object> args = new ArrayList<>(users.size() * 8);
+        for (int i = 0; i < users.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(ROW_VALUES);
+
+            User user = users.get(i);
+            args.add(user.getUsername());
+            args.add(user.getPassword());
+            args.add(user.getEmail());
+            args.add(user.getFirstName());
+            args.add(user.getLastName());
+            args.add(user.getPhone());
+            args.add(user.getRole().name());
+            args.add(Timestamp.valueOf(user.getCreatedAt()));
+        }
+        sql.append(INSERT_SUFFIX);
+        return new HashSet<>(jdbcTemplate.queryForList(sql.toString(), String.class, args.toArray()));
+    }
+}
@@ -0,0 +1,68 @@
+package com.globus.modul26.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Счётчик неудачных входов и временная блокировка на колонках users
+ * (failed_login_attempts, locked_until). Каждая операция - один UPDATE,
+ * поэтому параллельные попытки сериализуются блокировкой строки, без
+ * чтения истории LOGIN_ATTEMPT.
+ */
+@Repository
+public class UserLockoutRepository {
+
+    // В SET видны старые значения строки, поэтому новый счётчик вычисляется дважды:
+    // истёкшая блокировка начинает счёт заново, активная не продлевается
+    private static final String RECORD_FAILURE = """
+            UPDATE users SET
+                failed_login_attempts = CASE WHEN locked_until IS NOT NULL AND locked_until <= ?
+                                             THEN 1 ELSE failed_login_attempts + 1 END,
+                locked_until = CASE
+                    WHEN locked_until > ? THEN locked_until
+                    WHEN (CASE WHEN locked_until IS NOT NULL AND locked_until <= ?
+                               THEN 1 ELSE failed_login_attempts + 1 END) >= ? THEN ?
+                    ELSE locked_until END
+            WHERE id_user = ?
+            RETURNING failed_login_attempts, locked_until
+            """;
+
+    // Успешный вход проходит, только если пользователь не заблокирован на момент записи
+    private static final String RECORD_SUCCESS = """
+            UPDATE users SET failed_login_attempts = 0, locked_until = NULL, last_login = ?
+            WHERE id_user = ? AND NOT locked AND (locked_until IS NULL OR locked_until <= ?)
+            """;
+
+    public record LockoutState(int failedAttempts, LocalDateTime lockedUntil) {
+
+        public boolean isLocked(LocalDateTime now) {
+            return lockedUntil != null && lockedUntil.isAfter(now);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserLockoutRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<LockoutState> recordFailure(Long userId, LocalDateTime now, int maxAttempts, LocalDateTime lockUntil) {
+        Timestamp ts = Timestamp.valueOf(now);
+        List<LockoutState> rows = jdbcTemplate.query(RECORD_FAILURE, (rs, i) -> {
+            Timestamp until = rs.getTimestamp("locked_until");
+            return new LockoutState(rs.getInt("failed_login_attempts"), until != null ? until.toLocalDateTime() : null);
+        }, ts, ts, ts, maxAttempts, Timestamp.valueOf(lockUntil), userId);
+        return rows.stream().findFirst();
+    }
+
+    // false - пользователь заблокирован (или удалён), вход не засчитан
+    public boolean recordSuccess(Long userId, LocalDateTime now) {
+        Timestamp ts = Timestamp.valueOf(now);
+        return jdbcTemplate.update(RECORD_SUCCESS, ts, userId, ts) == 1;
+    }
+}
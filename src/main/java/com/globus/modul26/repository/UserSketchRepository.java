@@ -0,0 +1,77 @@
+package com.globus.modul26.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Types;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Хранение компактных профилей (user_sketches): одна строка на пользователя,
+ * читается одним запросом по первичному ключу, пишется пачкой upsert.
+ */
+@Repository
+public class UserSketchRepository {
+
+    private static final String SELECT = "SELECT user_id, ip_bloom, device_bloom, geo_bloom, platform_browser_bloom, "
+            + "device_hll, biometry_used, covered_id FROM user_sketches WHERE user_id = ?";
+
+    private static final String UPSERT = "INSERT INTO user_sketches (user_id, ip_bloom, device_bloom, geo_bloom, "
+            + "platform_browser_bloom, device_hll, biometry_used, covered_id, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, now()) "
+            + "ON CONFLICT (user_id) DO UPDATE SET ip_bloom = EXCLUDED.ip_bloom, device_bloom = EXCLUDED.device_bloom, "
+            + "geo_bloom = EXCLUDED.geo_bloom, platform_browser_bloom = EXCLUDED.platform_browser_bloom, "
+            + "device_hll = EXCLUDED.device_hll, biometry_used = EXCLUDED.biometry_used, "
+            + "covered_id = EXCLUDED.covered_id, updated_at = now()";
+
+    // coveredId - id последнего учтённого события (null - событий не было)
+    public record UserSketchRow(Long userId,
+                                byte[] ipBloom,
+                                byte[] deviceBloom,
+                                byte[] geoBloom,
+                                byte[] platformBrowserBloom,
+                                byte[] deviceHll,
+                                boolean biometryUsed,
+                                Integer coveredId) {}
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserSketchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<UserSketchRow> find(Long userId) {
+        List<UserSketchRow> rows = jdbcTemplate.query(SELECT, (rs, i) -> {
+            int covered = rs.getInt("covered_id");
+            return new UserSketchRow(
+                    rs.getLong("user_id"),
+                    rs.getBytes("ip_bloom"),
+                    rs.getBytes("device_bloom"),
+                    rs.getBytes("geo_bloom"),
+                    rs.getBytes("platform_browser_bloom"),
+                    rs.getBytes("device_hll"),
+                    rs.getBoolean("biometry_used"),
+                    rs.wasNull() ? null : covered);
+        }, userId);
+        return rows.stream().findFirst();
+    }
+
+    public void upsertAll(List<UserSketchRow> rows) {
+        if (rows.isEmpty()) return;
+        jdbcTemplate.batchUpdate(UPSERT, rows, rows.size(), (ps, row) -> {
+            ps.setLong(1, row.userId());
+            ps.setBytes(2, row.ipBloom());
+            ps.setBytes(3, row.deviceBloom());
+            ps.setBytes(4, row.geoBloom());
+            ps.setBytes(5, row.platformBrowserBloom());
+            ps.setBytes(6, row.deviceHll());
+            ps.setBoolean(7, row.biometryUsed());
+            if (row.coveredId() != null) {
+                ps.setInt(8, row.coveredId());
+            } else {
+                ps.setNull(8, Types.INTEGER);
+            }
+        });
+    }
+}
@@ -0,0 +1,6 @@
+package com.globus.modul26.security;
+
+// Публикуется после блокировки пользователя; слушатели сбрасывают
+// закэшированное состояние, связанное с ним (например, проверенные JWT)
+public record UserLockedEvent(Long userId) {
+}
@@ -0,0 +1,189 @@
+package com.globus.modul26.service;
+
+import com.globus.modul26.model.SecurityLog;
+import com.globus.modul26.repository.DetectionSignals;
+import com.globus.modul26.service.DetectionRule.DataNeed;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Данные одного события для правил детектора. Профиль, счётчики и
+ * агрегирующий запрос загружаются при первом обращении и переиспользуются
+ * всеми правилами. Если кэш профилей выключен, профильные и оконные сигналы
+ * берутся из одного запроса findDetectionSignals.
+ * Не потокобезопасен: живёт в рамках одной оценки. В режиме concurrent
+ * данные заранее загружает prefetch из виртуальных потоков, а правила читают
+ * их в потоке запроса только после завершения соответствующего Future.
+ */
+public final class DetectionContext {
+
+    private final DetectionEngine engine;
+    private final SecurityLog event;
+    private final Thread owner = Thread.currentThread();
+    private final String country;
+    private final String city;
+    private final String platform;
+    private final String browser;
+
+    private UserBehaviorProfile profile;
+    private DetectionSignals signals;
+    private Integer recentFailures;
+    private Integer recentPasswordChanges;
+    private long loadNanos;
+
+    DetectionContext(DetectionEngine engine, SecurityLog event) {
+        this.engine = engine;
+        this.event = event;
+        this.country = text(event.getCountry());
+        this.city = text(event.getCity());
+        this.platform = text(event.getPlatform());
+        this.browser = text(event.getBrowser());
+    }
+
+    public SecurityLog event() {
+        return event;
+    }
+
+    public Long userId() {
+        return event.getUserId();
+    }
+
+    public String country() {
+        return country;
+    }
+
+    public boolean isLogin() {
+        return "LOGIN".equals(event.getEventType());
+    }
+
+    public boolean usedBiometry() {
+        return Boolean.TRUE.equals(event.getBiometryUsed());
+    }
+
+    public boolean hasPlatformOrBrowser() {
+        return !platform.isEmpty() || !browser.isEmpty();
+    }
+
+    public boolean ipSeen() {
+        String ip = event.getIpAddress();
+        return engine.profilesCached()
+                ? profile().knowsIp(ip)
+                : Boolean.TRUE.equals(signals(DataNeed.PROFILE).getIpSeen());
+    }
+
+    public boolean geoSeen() {
+        return engine.profilesCached()
+                ? profile().knowsGeo(country, city)
+                : Boolean.TRUE.equals(signals(DataNeed.PROFILE).getGeoSeen());
+    }
+
+    public boolean deviceSeen() {
+        return engine.profilesCached()
+                ? profile().knowsDevice(event.getDeviceInfo())
+                : Boolean.TRUE.equals(signals(DataNeed.PROFILE).getDeviceSeen());
+    }
+
+    public boolean platformBrowserSeen() {
+        return engine.profilesCached()
+                ? profile().knowsPlatformBrowser(platform, browser)
+                : Boolean.TRUE.equals(signals(DataNeed.PROFILE).getPlatformBrowserSeen());
+    }
+
+    public boolean biometryUsedBefore() {
+        return engine.profilesCached()
+                ? profile().hasUsedBiometry()
+                : Boolean.TRUE.equals(signals(DataNeed.PROFILE).getBiometryUsed());
+    }
+
+    public boolean multipleDevices() {
+        return engine.profilesCached()
+                ? profile().deviceCount() > 1
+                : Boolean.TRUE.equals(signals(DataNeed.PROFILE).getMultipleDevices());
+    }
+
+    public int recentFailures() {
+        if (recentFailures == null) {
+            recentFailures = engine.profilesCached()
+                    ? load(DataNeed.COUNTERS, () -> engine.counters().count(userId(),
+                            EventWindowCounters.Kind.LOGIN_FAILURE, engine.failedLoginWindow()))
+                    : signals(DataNeed.COUNTERS).getRecentFailures().intValue();
+        }
+        return recentFailures;
+    }
+
+    public int recentPasswordChanges() {
+        if (recentPasswordChanges == null) {
+            recentPasswordChanges = engine.profilesCached()
+                    ? load(DataNeed.COUNTERS, () -> engine.counters().count(userId(),
+                            EventWindowCounters.Kind.PASSWORD_CHANGE, DetectionEngine.PASSWORD_CHANGE_WINDOW))
+                    : signals(DataNeed.COUNTERS).getRecentPasswordChanges().intValue();
+        }
+        return recentPasswordChanges;
+    }
+
+    // Загрузить данные для need; возвращает потребности, которые теперь закрыты
+    // (без кэша профилей один запрос закрывает и профиль, и счётчики)
+    Set<DataNeed> prefetch(DataNeed need) {
+        if (!engine.profilesCached()) {
+            signals(need);
+            return EnumSet.of(DataNeed.PROFILE, DataNeed.COUNTERS);
+        }
+        switch (need) {
+            case PROFILE -> profile();
+            case COUNTERS -> {
+                recentFailures();
+                recentPasswordChanges();
+            }
+            case EVENT -> { }
+        }
+        return EnumSet.of(need);
+    }
+
+    // Время, потраченное на загрузку данных в потоке запроса (вычитается из цены правила)
+    long loadNanos() {
+        return loadNanos;
+    }
+
+    private UserBehaviorProfile profile() {
+        if (profile == null) {
+            profile = load(DataNeed.PROFILE, () -> engine.profileCache().get(userId()));
+        }
+        return profile;
+    }
+
+    // Все исторические сигналы одним агрегирующим запросом
+    private DetectionSignals signals(DataNeed need) {
+        if (signals == null) {
+            LocalDateTime now = LocalDateTime.now();
+            String ip = event.getIpAddress();
+            String device = event.getDeviceInfo();
+            signals = load(need, () -> engine.metrics().historyQuery().record(() ->
+                    engine.repository().findDetectionSignals(userId(),
+                            ip != null ? ip : "",
+                            country, city,
+                            device != null ? device : "",
+                            platform, browser,
+                            now.minus(engine.failedLoginWindow()),
+                            now.minus(DetectionEngine.PASSWORD_CHANGE_WINDOW))));
+        }
+        return signals;
+    }
+
+    private <T> T load(DataNeed need, Supplier<T> loader) {
+        long start = System.nanoTime();
+        T value = loader.get();
+        long elapsed = System.nanoTime() - start;
+        if (Thread.currentThread() == owner) {
+            loadNanos += elapsed;
+        }
+        engine.recordLoad(need, elapsed);
+        return value;
+    }
+
+    private static String text(String value) {
+        return value != null ? value.trim() : "";
+    }
+}
@@ -0,0 +1,334 @@
+package com.globus.modul26.service;
+
+import com.globus.modul26.model.SecurityLog;
+import com.globus.modul26.repository.SecurityLogRepository;
+import com.globus.modul26.service.DetectionMetrics.Rule;
+import com.globus.modul26.service.DetectionRule.DataNeed;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Оценка события цепочкой правил DetectionRule до первого срабатывания.
+ * Результат (OR всех правил) от порядка не зависит, поэтому порядок выбирается
+ * ради скорости: сначала по заявленной цене, затем (adaptive=true) раз в
+ * reorder-interval событий по замерам - правило с меньшим отношением
+ * "цена / доля срабатываний" идёт раньше. Цена правила = собственное время +
+ * загрузка нужных ему данных (профиль, счётчики), замеренная отдельно.
+ * Статистика - скользящие средние без блокировок; потерянные при гонке
+ * обновления на порядок практически не влияют.
+ *
+ * mode=concurrent: правила только по полям события проверяются сразу, а
+ * загрузки данных (профиль, счётчики либо общий запрос истории) стартуют
+ * одновременно в виртуальных потоках. Правило проверяется, как только готовы
+ * его данные; после первого срабатывания остальные загрузки больше не ждём.
+ * Что не успело за deadline-ms, считается "неизвестно" (правило не сработало,
+ * метрика detection.rule.unknown), но начатые загрузки не прерываются и
+ * дозаполняют кэш профилей в фоне. Каждая загрузка может занять отдельное
+ * соединение пула - размер пула должен это учитывать.
+ */
+@Component
+public class DetectionEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(DetectionEngine.class);
+
+    static final Duration PASSWORD_CHANGE_WINDOW = Duration.ofDays(1);
+
+    private static final double ALPHA = 0.05;
+    private static final double MIN_HIT_RATE = 1e-4;
+    private static final double INITIAL_HIT_RATE = 0.01;
+
+    private static final class Stats {
+        volatile double costNanos;
+        volatile double hitRate = INITIAL_HIT_RATE;
+
+        Stats(double costNanos) {
+            this.costNanos = costNanos;
+        }
+
+        void update(long nanos, boolean fired) {
+            costNanos += ALPHA * (nanos - costNanos);
+            hitRate += ALPHA * ((fired ? 1.0 : 0.0) - hitRate);
+        }
+    }
+
+    private final UserProfileCache profileCache;
+    private final EventWindowCounters counters;
+    private final SecurityLogRepository repository;
+    private final DetectionMetrics metrics;
+    private final Duration failedLoginWindow;
+    private final boolean adaptive;
+    private final int reorderInterval;
+    private final boolean concurrent;
+    private final long deadlineNanos;
+    private final ExecutorService signalExecutor;
+
+    private final List<DetectionRule> rules;
+    private final Stats[] ruleStats;
+    private final Map<DataNeed, Stats> loadStats = new EnumMap<>(DataNeed.class);
+    private final AtomicLong evaluations = new AtomicLong();
+    private volatile int[] order;
+
+    @Autowired
+    public DetectionEngine(UserProfileCache profileCache,
+                           EventWindowCounters counters,
+                           SecurityLogRepository repository,
+                           DetectionMetrics metrics,
+                           @Value("${security.counters.failed-login-window-minutes:15}") int failedLoginWindowMinutes,
+                           @Value("${security.detection.adaptive:true}") boolean adaptive,
+                           @Value("${security.detection.reorder-interval:1024}") int reorderInterval,
+                           @Value("${security.detection.mode:sequential}") String mode,
+                           @Value("${security.detection.deadline-ms:50}") long deadlineMs) {
+        this(profileCache, counters, repository, metrics, failedLoginWindowMinutes, adaptive, reorderInterval,
+                mode, deadlineMs, StandardRules.all());
+    }
+
+    // Свои правила подключаются здесь; порядок в списке значения не имеет
+    public DetectionEngine(UserProfileCache profileCache,
+                           EventWindowCounters counters,
+                           SecurityLogRepository repository,
+                           DetectionMetrics metrics,
+                           int failedLoginWindowMinutes,
+                           boolean adaptive,
+                           int reorderInterval,
+                           String mode,
+                           long deadlineMs,
+                           List<DetectionRule> rules) {
+        this.profileCache = profileCache;
+        this.counters = counters;
+        this.repository = repository;
+        this.metrics = metrics;
+        this.failedLoginWindow = Duration.ofMinutes(failedLoginWindowMinutes);
+        this.adaptive = adaptive;
+        this.reorderInterval = Math.max(1, reorderInterval);
+        this.concurrent = "concurrent".equalsIgnoreCase(mode.trim());
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        this.signalExecutor = concurrent
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("detection-signal-", 0).factory())
+                : null;
+        this.rules = List.copyOf(rules);
+        this.ruleStats = new Stats[this.rules.size()];
+        for (int i = 0; i < ruleStats.length; i++) {
+            ruleStats[i] = new Stats(this.rules.get(i).estimatedCostNanos());
+        }
+        for (DataNeed need : DataNeed.values()) {
+            loadStats.put(need, new Stats(need.initialLoadNanos()));
+        }
+        this.order = rankedOrder();
+    }
+
+    public boolean isSuspicious(SecurityLog log) {
+        // Попытки входа оцениваются при записи (AuthController), здесь доверяем флагу
+        if ("LOGIN_ATTEMPT".equals(log.getEventType())) {
+            return Boolean.TRUE.equals(log.getIsSuspicious());
+        }
+        if (log.getUserId() == null) return false;
+        return decide(new DetectionContext(this, log));
+    }
+
+    // Сработавшие правила при записи события; пустой список - не подозрительно.
+    // Проверка до первого срабатывания как в isSuspicious, остальные правила
+    // дооцениваются только для подозрительных событий на уже загруженных данных
+    public List<Rule> detect(SecurityLog log) {
+        if (log.getUserId() == null || "LOGIN_ATTEMPT".equals(log.getEventType())) return List.of();
+        DetectionContext ctx = new DetectionContext(this, log);
+        if (!decide(ctx)) return List.of();
+        // В concurrent-режиме отменённые загрузки могли не закончиться - берём новый контекст
+        DetectionContext detail = concurrent ? new DetectionContext(this, log) : ctx;
+        List<Rule> fired = new ArrayList<>();
+        for (int index : order) {
+            DetectionRule rule = rules.get(index);
+            if (rule.fires(detail)) {
+                fired.add(rule.id());
+            }
+        }
+        return fired;
+    }
+
+    // Все сработавшие правила, без остановки на первом (для разбора инцидентов)
+    public List<Rule> firedRules(SecurityLog log) {
+        List<Rule> fired = new ArrayList<>();
+        if (log.getUserId() == null) return fired;
+        DetectionContext ctx = new DetectionContext(this, log);
+        for (int index : order) {
+            if (evaluate(index, ctx)) {
+                fired.add(rules.get(index).id());
+            }
+        }
+        return fired;
+    }
+
+    // Текущий порядок проверки
+    public List<Rule> currentOrder() {
+        return Arrays.stream(order).mapToObj(i -> rules.get(i).id()).toList();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (signalExecutor != null) {
+            signalExecutor.shutdownNow();
+        }
+    }
+
+    private boolean decide(DetectionContext ctx) {
+        boolean fired = concurrent ? evaluateConcurrently(ctx) : evaluateSequentially(ctx);
+        if (adaptive && evaluations.incrementAndGet() % reorderInterval == 0) {
+            reorder();
+        }
+        return fired;
+    }
+
+    private boolean evaluateSequentially(DetectionContext ctx) {
+        for (int index : order) {
+            if (evaluate(index, ctx)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean evaluateConcurrently(DetectionContext ctx) {
+        int[] current = order;
+        boolean[] done = new boolean[rules.size()];
+        Set<DataNeed> ready = EnumSet.of(DataNeed.EVENT);
+        if (evaluateReady(current, done, ready, ctx)) {
+            return true;
+        }
+
+        // Без кэша профилей все данные приходят одним запросом - одна загрузка
+        Set<DataNeed> pending = EnumSet.noneOf(DataNeed.class);
+        for (int index : current) {
+            if (!done[index]) pending.addAll(rules.get(index).needs());
+        }
+        pending.remove(DataNeed.EVENT);
+        if (!profilesCached() && !pending.isEmpty()) {
+            pending = EnumSet.of(DataNeed.PROFILE);
+        }
+
+        ExecutorCompletionService<Set<DataNeed>> loads = new ExecutorCompletionService<>(signalExecutor);
+        List<Future<Set<DataNeed>>> futures = new ArrayList<>(pending.size());
+        for (DataNeed need : pending) {
+            futures.add(loads.submit(() -> ctx.prefetch(need)));
+        }
+        long deadline = System.nanoTime() + deadlineNanos;
+        try {
+            for (int remaining = futures.size(); remaining > 0; remaining--) {
+                Future<Set<DataNeed>> next = loads.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (next == null) break;
+                try {
+                    ready.addAll(next.get());
+                } catch (ExecutionException e) {
+                    log.warn("Detection signal lookup failed for user {}", ctx.userId(), e.getCause());
+                    continue;
+                }
+                if (evaluateReady(current, done, ready, ctx)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Без прерывания: начатая загрузка дойдёт в фоне и прогреет кэш профилей и счётчиков
+            // (прерванный JDBC-вызов к тому же закрыл бы соединение пула)
+            futures.forEach(f -> f.cancel(false));
+        }
+        for (int index : current) {
+            if (!done[index]) metrics.unknown(rules.get(index).id());
+        }
+        return false;
+    }
+
+    // Проверить по порядку все ещё не проверенные правила, чьи данные уже готовы
+    private boolean evaluateReady(int[] current, boolean[] done, Set<DataNeed> ready, DetectionContext ctx) {
+        for (int index : current) {
+            if (done[index] || !ready.containsAll(rules.get(index).needs())) continue;
+            done[index] = true;
+            if (evaluate(index, ctx)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean evaluate(int index, DetectionContext ctx) {
+        DetectionRule rule = rules.get(index);
+        long loadedBefore = ctx.loadNanos();
+        long start = System.nanoTime();
+        boolean fired = rule.fires(ctx);
+        long elapsed = System.nanoTime() - start;
+        metrics.record(rule.id(), elapsed, fired);
+        ruleStats[index].update(Math.max(0, elapsed - (ctx.loadNanos() - loadedBefore)), fired);
+        return fired;
+    }
+
+    void recordLoad(DataNeed need, long nanos) {
+        loadStats.get(need).update(nanos, false);
+    }
+
+    private void reorder() {
+        int[] ranked = rankedOrder();
+        if (!Arrays.equals(ranked, order)) {
+            order = ranked;
+            log.debug("Detection rule order changed: {}", currentOrder());
+        }
+    }
+
+    private int[] rankedOrder() {
+        double[] rank = new double[rules.size()];
+        for (int i = 0; i < rank.length; i++) {
+            double cost = ruleStats[i].costNanos;
+            for (DataNeed need : rules.get(i).needs()) {
+                cost += loadStats.get(need).costNanos;
+            }
+            rank[i] = cost / Math.max(MIN_HIT_RATE, ruleStats[i].hitRate);
+        }
+        Integer[] indices = new Integer[rank.length];
+        for (int i = 0; i < indices.length; i++) indices[i] = i;
+        Arrays.sort(indices, Comparator.comparingDouble(i -> rank[i]));
+        return Arrays.stream(indices).mapToInt(Integer::intValue).toArray();
+    }
+
+    boolean profilesCached() {
+        return profileCache.isEnabled();
+    }
+
+    UserProfileCache profileCache() {
+        return profileCache;
+    }
+
+    EventWindowCounters counters() {
+        return counters;
+    }
+
+    SecurityLogRepository repository() {
+        return repository;
+    }
+
+    DetectionMetrics metrics() {
+        return metrics;
+    }
+
+    Duration failedLoginWindow() {
+        return failedLoginWindow;
+    }
+}
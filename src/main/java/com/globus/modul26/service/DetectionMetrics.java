@@ -0,0 +1,98 @@
+package com.globus.modul26.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики правил детектора: на каждое правило счётчики проверок и
+ * срабатываний и таймер с гистограммой (detection.rule.* с тегом rule).
+ * Счётчики и таймеры регистрируются один раз, на горячем пути только
+ * System.nanoTime и инкременты.
+ */
+@Component
+public class DetectionMetrics {
+
+    public enum Rule {
+        LOGIN_WITHOUT_BIOMETRY("login_without_biometry"),
+        NEW_IP("new_ip"),
+        NEW_GEO("new_geo"),
+        NEW_DEVICE("new_device"),
+        NEW_PLATFORM_BROWSER("new_platform_browser"),
+        FAILED_LOGINS("failed_logins"),
+        PASSWORD_CHANGES("password_changes"),
+        BIOMETRY_DOWNGRADE("biometry_downgrade"),
+        BLACKLISTED_COUNTRY("blacklisted_country"),
+        USER_AGENT_MISMATCH("user_agent_mismatch");
+
+        private final String tag;
+
+        Rule(String tag) {
+            this.tag = tag;
+        }
+
+        public String tag() {
+            return tag;
+        }
+    }
+
+    private final Map<Rule, Counter> evaluations = new EnumMap<>(Rule.class);
+    private final Map<Rule, Counter> fires = new EnumMap<>(Rule.class);
+    private final Map<Rule, Timer> latency = new EnumMap<>(Rule.class);
+    private final Map<Rule, Counter> unknown = new EnumMap<>(Rule.class);
+    private final Timer historyQuery;
+
+    public DetectionMetrics(MeterRegistry meterRegistry) {
+        for (Rule rule : Rule.values()) {
+            evaluations.put(rule, Counter.builder("detection.rule.evaluations")
+                    .tag("rule", rule.tag())
+                    .description("Times the detection rule was evaluated")
+                    .register(meterRegistry));
+            fires.put(rule, Counter.builder("detection.rule.fires")
+                    .tag("rule", rule.tag())
+                    .description("Times the detection rule marked an event suspicious")
+                    .register(meterRegistry));
+            unknown.put(rule, Counter.builder("detection.rule.unknown")
+                    .tag("rule", rule.tag())
+                    .description("Times the rule was skipped because its data missed the deadline")
+                    .register(meterRegistry));
+            latency.put(rule, Timer.builder("detection.rule.latency")
+                    .tag("rule", rule.tag())
+                    .description("Detection rule evaluation time")
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(500))
+                    .maximumExpectedValue(Duration.ofSeconds(1))
+                    .register(meterRegistry));
+        }
+        this.historyQuery = Timer.builder("detection.history.query")
+                .description("Aggregate history query used when the profile cache is disabled")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(5))
+                .register(meterRegistry);
+    }
+
+    // Одна проверка правила: время и результат
+    public void record(Rule rule, long nanos, boolean fired) {
+        latency.get(rule).record(nanos, TimeUnit.NANOSECONDS);
+        evaluations.get(rule).increment();
+        if (fired) {
+            fires.get(rule).increment();
+        }
+    }
+
+    // Данные правила не успели к сроку (режим concurrent)
+    public void unknown(Rule rule) {
+        unknown.get(rule).increment();
+    }
+
+    public Timer historyQuery() {
+        return historyQuery;
+    }
+}
@@ -0,0 +1,42 @@
+package com.globus.modul26.service;
+
+import com.globus.modul26.service.DetectionMetrics.Rule;
+
+import java.util.Set;
+
+/**
+ * Правило детектора подозрительной активности. Данные берёт только из
+ * DetectionContext: контекст один на событие, загружает всё лениво и один раз.
+ * Цена и потребности в данных - начальная оценка для порядка проверки;
+ * дальше DetectionEngine уточняет порядок по замерам.
+ */
+public interface DetectionRule {
+
+    enum DataNeed {
+        // только поля самого события
+        EVENT(0),
+        // поведенческий профиль (кэш или агрегирующий запрос)
+        PROFILE(20_000),
+        // оконные счётчики неудачных входов и смен пароля
+        COUNTERS(5_000);
+
+        private final long initialLoadNanos;
+
+        DataNeed(long initialLoadNanos) {
+            this.initialLoadNanos = initialLoadNanos;
+        }
+
+        public long initialLoadNanos() {
+            return initialLoadNanos;
+        }
+    }
+
+    Rule id();
+
+    // Оценка собственной работы правила без загрузки данных, нс
+    long estimatedCostNanos();
+
+    Set<DataNeed> needs();
+
+    boolean fires(DetectionContext ctx);
+}
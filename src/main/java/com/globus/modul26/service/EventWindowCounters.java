@@ -0,0 +1,275 @@
+package com.globus.modul26.service;
+
+import com.globus.modul26.model.SecurityLog;
+import com.globus.modul26.repository.SecurityLogRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Счётчики событий в скользящем окне: "N событий типа X за окно W" без
+ * запросов к Postgres. На пользователя и тип хранится кольцевой буфер
+ * последних RING_CAPACITY временных меток, запись в него без блокировок.
+ * Карта пользователей разбита на полосы (striped LRU) с общим лимитом
+ * max-users; при промахе буфер восстанавливается из БД. Пока счётчики
+ * пользователя загружаются, record() буферизуется в заглушке и после загрузки
+ * применяется к ним (кроме событий, уже прочитанных из истории по id);
+ * остальные обращения ждут ту же загрузку.
+ * LOGIN_FAILURE - неудачные попытки после последнего успешного входа в
+ * пределах окна (security.counters.failed-login-window-minutes), а не
+ * "последние N попыток неудачны" без ограничения по времени, как было до
+ * счётчиков: неудачи старше окна правило FAILED_LOGINS больше не учитывает.
+ */
+@Component
+public class EventWindowCounters {
+
+    public enum Kind {
+        // неудачные LOGIN_ATTEMPT после последнего успешного входа
+        LOGIN_FAILURE,
+        PASSWORD_CHANGE
+    }
+
+    static final int RING_CAPACITY = 16;
+    private static final int STRIPES = 16;
+
+    private final SecurityLogRepository repository;
+    private final Duration maxWindow;
+    private final List<Stripe> stripes;
+
+    public EventWindowCounters(SecurityLogRepository repository,
+                               @Value("${security.counters.max-users:50000}") int maxUsers,
+                               @Value("${security.counters.max-window-hours:24}") int maxWindowHours) {
+        this.repository = repository;
+        this.maxWindow = Duration.ofHours(maxWindowHours);
+        int perStripe = Math.max(1, maxUsers / STRIPES);
+        this.stripes = new ArrayList<>(STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new Stripe(perStripe));
+        }
+    }
+
+    public int count(Long userId, Kind kind, Duration window) {
+        if (userId == null) return 0;
+        long border = System.currentTimeMillis() - window.toMillis();
+        return countersFor(userId).ring(kind).countAfter(border);
+    }
+
+    // Вызывается для каждого зафиксированного события; отсутствующего в кэше
+    // пользователя не создаём - он соберётся из БД при следующем запросе
+    public void record(SecurityLog saved) {
+        if (saved.getUserId() == null || !counted(saved)) return;
+        Stripe stripe = stripe(saved.getUserId());
+        UserCounters counters;
+        synchronized (stripe) {
+            counters = stripe.users.get(saved.getUserId());
+            if (counters == null) {
+                Loading slot = stripe.loading.get(saved.getUserId());
+                if (slot != null) slot.recorded.add(saved);
+                return;
+            }
+        }
+        add(counters, saved);
+    }
+
+    // Событие ещё не в БД (пакетный и асинхронный приём): счётчики пользователя
+    // загружаются без него, затем событие добавляется
+    public void recordPending(SecurityLog event) {
+        if (event.getUserId() == null || !counted(event)) return;
+        add(countersFor(event.getUserId()), event);
+    }
+
+    private static boolean counted(SecurityLog event) {
+        return "LOGIN_ATTEMPT".equals(event.getEventType()) || "PASSWORD_CHANGE".equals(event.getEventType());
+    }
+
+    private static void add(UserCounters counters, SecurityLog saved) {
+        long at = toEpochMillis(saved.getCreatedAt());
+        if ("LOGIN_ATTEMPT".equals(saved.getEventType())) {
+            if (Boolean.TRUE.equals(saved.getIsSuspicious())) {
+                counters.ring(Kind.LOGIN_FAILURE).add(at);
+            } else {
+                counters.ring(Kind.LOGIN_FAILURE).reset(at);
+            }
+        } else if ("PASSWORD_CHANGE".equals(saved.getEventType())) {
+            counters.ring(Kind.PASSWORD_CHANGE).add(at);
+        }
+    }
+
+    public void invalidate(Long userId) {
+        Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            stripe.users.remove(userId);
+            stripe.loading.remove(userId);
+        }
+    }
+
+    private UserCounters countersFor(Long userId) {
+        Stripe stripe = stripe(userId);
+        Loading slot;
+        boolean loader = false;
+        synchronized (stripe) {
+            UserCounters counters = stripe.users.get(userId);
+            if (counters != null) return counters;
+            slot = stripe.loading.get(userId);
+            if (slot == null) {
+                slot = new Loading();
+                stripe.loading.put(userId, slot);
+                loader = true;
+            }
+        }
+        if (loader) {
+            return load(userId, stripe, slot);
+        }
+        try {
+            return slot.counters.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    // История читается вне блокировки полосы
+    private UserCounters load(Long userId, Stripe stripe, Loading slot) {
+        Set<Integer> loadedIds = new HashSet<>();
+        UserCounters loaded;
+        try {
+            loaded = load(userId, loadedIds);
+        } catch (RuntimeException e) {
+            synchronized (stripe) {
+                stripe.loading.remove(userId, slot);
+            }
+            slot.counters.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (stripe) {
+            // Записанные во время загрузки: учитываем те, что не попали в прочитанную историю.
+            // Кольцо не идемпотентно, поэтому повтор отсекается по id
+            for (SecurityLog event : slot.recorded) {
+                if (event.getId() == null || !loadedIds.contains(event.getId())) {
+                    add(loaded, event);
+                }
+            }
+            // После invalidate заглушки нет: счётчики отдаются вызвавшему, но не кэшируются
+            if (stripe.loading.remove(userId, slot)) {
+                stripe.users.put(userId, loaded);
+            }
+        }
+        slot.counters.complete(loaded);
+        return loaded;
+    }
+
+    private Stripe stripe(Long userId) {
+        return stripes.get(Long.hashCode(userId * 0x9E3779B97F4A7C15L) & (STRIPES - 1));
+    }
+
+    private UserCounters load(Long userId, Set<Integer> loadedIds) {
+        UserCounters counters = new UserCounters();
+
+        // Последние попытки входа от новых к старым: неудачи до первого успеха.
+        // Старше maxWindow ни одно окно не смотрит, а граница по created_at
+        // ограничивает чтение свежими секциями security_logs
+        LocalDateTime after = LocalDateTime.now().minus(maxWindow);
+        List<SecurityLog> attempts = repository.findByUserIdAndEventTypeAndCreatedAtAfterOrderByCreatedAtDesc(
+                userId, "LOGIN_ATTEMPT", after, PageRequest.of(0, RING_CAPACITY));
+        Ring failures = counters.ring(Kind.LOGIN_FAILURE);
+        for (int i = attempts.size() - 1; i >= 0; i--) {
+            SecurityLog attempt = attempts.get(i);
+            loadedIds.add(attempt.getId());
+            long at = toEpochMillis(attempt.getCreatedAt());
+            if (Boolean.TRUE.equals(attempt.getIsSuspicious())) {
+                failures.add(at);
+            } else {
+                failures.reset(at);
+            }
+        }
+
+        Ring changes = counters.ring(Kind.PASSWORD_CHANGE);
+        for (SecurityLog change : repository.findByUserIdAndEventTypeAndCreatedAtAfter(userId, "PASSWORD_CHANGE", after)) {
+            loadedIds.add(change.getId());
+            changes.add(toEpochMillis(change.getCreatedAt()));
+        }
+        return counters;
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        LocalDateTime value = time != null ? time : LocalDateTime.now();
+        return value.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // Полоса: LRU пользователей и их загрузки, обе карты под блокировкой полосы
+    private static final class Stripe {
+        private final Map<Long, UserCounters> users;
+        private final Map<Long, Loading> loading = new HashMap<>();
+
+        Stripe(int capacity) {
+            this.users = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, UserCounters> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+    }
+
+    private static final class Loading {
+        private final CompletableFuture<UserCounters> counters = new CompletableFuture<>();
+        // Под блокировкой полосы
+        private final List<SecurityLog> recorded = new ArrayList<>();
+    }
+
+    private static final class UserCounters {
+        private final EnumMap<Kind, Ring> rings = new EnumMap<>(Kind.class);
+
+        UserCounters() {
+            for (Kind kind : Kind.values()) {
+                rings.put(kind, new Ring());
+            }
+        }
+
+        // EnumMap заполнен в конструкторе и дальше только читается
+        Ring ring(Kind kind) {
+            return rings.get(kind);
+        }
+    }
+
+    private static final class Ring {
+        private final AtomicLongArray slots = new AtomicLongArray(RING_CAPACITY);
+        private final AtomicLong cursor = new AtomicLong();
+        private volatile long resetAt;
+
+        void add(long epochMillis) {
+            int slot = (int) (cursor.getAndIncrement() & (RING_CAPACITY - 1));
+            slots.set(slot, epochMillis);
+        }
+
+        void reset(long epochMillis) {
+            if (epochMillis > resetAt) {
+                resetAt = epochMillis;
+            }
+        }
+
+        int countAfter(long border) {
+            long from = Math.max(border, resetAt);
+            int count = 0;
+            for (int i = 0; i < RING_CAPACITY; i++) {
+                if (slots.get(i) > from) count++;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.globus.modul26.service;
+
+import com.globus.modul26.model.SecurityLog;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Профиль на точных множествах: без ошибок, но память растёт с историей
+public class ExactBehaviorProfile extends UserBehaviorProfile {
+
+    private final Set<String> ips = new HashSet<>();
+    private final Set<String> geos = new HashSet<>();
+    private final Set<String> devices = new HashSet<>();
+    private final Set<String> platformBrowsers = new HashSet<>();
+    private boolean biometryUsed;
+
+    public static ExactBehaviorProfile fromHistory(List<SecurityLog> history) {
+        ExactBehaviorProfile profile = new ExactBehaviorProfile();
+        history.forEach(profile::record);
+        return profile;
+    }
+
+    @Override
+    public synchronized void record(SecurityLog log) {
+        if (log.getIpAddress() != null) {
+            ips.add(log.getIpAddress());
+        }
+        if (log.getDeviceInfo() != null) {
+            devices.add(log.getDeviceInfo());
+        }
+        geos.add(geoKey(value(log.getCountry()), value(log.getCity())));
+        platformBrowsers.add(platformBrowserKey(value(log.getPlatform()), value(log.getBrowser())));
+        if (Boolean.TRUE.equals(log.getBiometryUsed())) {
+            biometryUsed = true;
+        }
+    }
+
+    @Override
+    public synchronized boolean knowsIp(String ip) {
+        return ips.contains(ip);
+    }
+
+    @Override
+    public synchronized boolean knowsGeo(String country, String city) {
+        return geos.contains(geoKey(country, city));
+    }
+
+    @Override
+    public synchronized boolean knowsDevice(String deviceInfo) {
+        return devices.contains(deviceInfo);
+    }
+
+    @Override
+    public synchronized int deviceCount() {
+        return devices.size();
+    }
+
+    @Override
+    public synchronized boolean knowsPlatformBrowser(String platform, String browser) {
+        return platformBrowsers.contains(platformBrowserKey(platform, browser));
+    }
+
+    @Override
+    public synchronized boolean hasUsedBiometry() {
+        return biometryUsed;
+    }
+}
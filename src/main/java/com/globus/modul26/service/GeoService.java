@@ -1,7 +1,20 @@
-//package com.globus.modul26.service;
-//
-//import java.util.Map;
-//
-//public interface GeoService {
-//    Map<String, Object> getGeoDataByIp(String ipAddress);
-//}
\ No newline at end of file
+package com.globus.modul26.service;
+
+import com.globus.modul26.dto.GeoLocation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public interface GeoService {
+
+    GeoLocation lookup(String ipAddress);
+
+    default Map<String, Object> getGeoDataByIp(String ipAddress) {
+        GeoLocation geo = lookup(ipAddress);
+        Map<String, Object> data = new HashMap<>();
+        data.put("country", geo.countryIso3());
+        data.put("country_name", geo.countryName());
+        data.put("city", geo.city());
+        return data;
+    }
+}
@@ -1,19 +1,68 @@
-//package com.globus.modul26.service;
-//
-//import org.springframework.stereotype.Service;
-//
-//import java.util.HashMap;
-//import java.util.Map;
-//
-//@Service
-//public class GeoServiceImpl implements GeoService {
-//
-//    @Override
-//    public Map<String, Object> getGeoDataByIp(String ipAddress) {
-//
-//        Map<String, Object> geo = new HashMap<>();
-//        geo.put("country", "RU");
-//        geo.put("city", "Moscow");
-//        return geo;
-//    }
-//}
\ No newline at end of file
+package com.globus.modul26.service;
+
+import com.globus.modul26.dto.GeoLocation;
+import com.globus.modul26.util.GeoDatabase;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Геопоиск по локальной базе (см. GeoDatabase) без сетевых вызовов.
+ * Файл периодически проверяется; новая версия загружается целиком
+ * и подменяется атомарно, текущие запросы дорабатывают со старой.
+ */
+@Service
+public class GeoServiceImpl implements GeoService {
+
+    private static final Logger log = LoggerFactory.getLogger(GeoServiceImpl.class);
+
+    private final Path databasePath;
+    private final AtomicReference<GeoDatabase> database = new AtomicReference<>();
+    private volatile String loadedVersion;
+
+    public GeoServiceImpl(@Value("${geo.database.path:data/geoip.bin}") String databasePath) {
+        this.databasePath = Paths.get(databasePath);
+    }
+
+    @PostConstruct
+    public void init() {
+        reloadIfChanged();
+        if (database.get() == null) {
+            log.warn("GeoIP database {} not found, all lookups will return Unknown", databasePath);
+        }
+    }
+
+    @Override
+    public GeoLocation lookup(String ipAddress) {
+        GeoDatabase db = database.get();
+        return db != null ? db.lookup(ipAddress) : GeoLocation.UNKNOWN;
+    }
+
+    @Scheduled(fixedDelayString = "${geo.database.reload-interval-ms:60000}",
+            initialDelayString = "${geo.database.reload-interval-ms:60000}")
+    public void reloadIfChanged() {
+        try {
+            if (!Files.isRegularFile(databasePath)) return;
+            BasicFileAttributes attrs = Files.readAttributes(databasePath, BasicFileAttributes.class);
+            String version = attrs.lastModifiedTime().toMillis() + ":" + attrs.size();
+            if (version.equals(loadedVersion)) return;
+
+            GeoDatabase fresh = GeoDatabase.open(databasePath);
+            database.set(fresh);
+            loadedVersion = version;
+            log.info("GeoIP database loaded from {}: {} ranges", databasePath, fresh.size());
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to load GeoIP database {}, keeping previous version", databasePath, e);
+        }
+    }
+}
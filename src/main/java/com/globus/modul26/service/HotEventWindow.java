@@ -0,0 +1,337 @@
+package com.globus.modul26.service;
+
+import com.globus.modul26.dto.HotWindowReport;
+import com.globus.modul26.model.SecurityLog;
+import com.globus.modul26.repository.MetadataDictionary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Колоночное окно последних событий в памяти для админской аналитики
+ * ("события по странам за час", "топ IP с неудачными входами за сутки")
+ * без сканов security_logs. События раскладываются по сегментам длиной
+ * segment-minutes; сегмент - набор примитивных массивов (userId, IP,
+ * страна, тип события, время, флаги). Устаревший сегмент выбрасывается
+ * целиком. Запрос - плотный цикл по колонкам каждого сегмента, сегменты
+ * считаются параллельно. После рестарта окно пустое и заполняется
+ * новыми событиями (см. coveredSince в ответе).
+ */
+@Component
+public class HotEventWindow {
+
+    public enum GroupBy {
+        COUNTRY,
+        EVENT_TYPE,
+        IP
+    }
+
+    // since/eventType/suspicious/userId - фильтры; null - без фильтра
+    public record Query(LocalDateTime since, String eventType, Boolean suspicious, Long userId) {}
+
+    public record Stats(boolean enabled, int segments, long events, long approxBytes, LocalDateTime coveredSince) {}
+
+    static final byte SUSPICIOUS = 1;
+    static final byte BIOMETRY = 2;
+
+    // Типы событий приходят от клиентов; сверх лимита - общий id "OTHER"
+    private static final int MAX_EVENT_TYPES = 1024;
+    private static final String OTHER_EVENT_TYPE = "OTHER";
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final MetadataDictionary dictionary;
+    private final boolean enabled;
+    private final long windowSeconds;
+    private final long segmentSeconds;
+    private final long maxEvents;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final AtomicLong events = new AtomicLong();
+    private final Map<String, Short> eventTypeIds = new ConcurrentHashMap<>();
+    private final List<String> eventTypes = new CopyOnWriteArrayList<>();
+
+    public HotEventWindow(MetadataDictionary dictionary,
+                          @Value("${security.hot-window.enabled:true}") boolean enabled,
+                          @Value("${security.hot-window.hours:24}") int hours,
+                          @Value("${security.hot-window.segment-minutes:10}") int segmentMinutes,
+                          @Value("${security.hot-window.max-events:5000000}") long maxEvents) {
+        this.dictionary = dictionary;
+        this.enabled = enabled;
+        this.windowSeconds = hours * 3600L;
+        this.segmentSeconds = Math.max(1, segmentMinutes) * 60L;
+        this.maxEvents = maxEvents;
+        eventTypeId(OTHER_EVENT_TYPE);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Вызывается для каждого сохранённого события (countryId уже проставлен словарём)
+    public void record(SecurityLog saved) {
+        if (!enabled || saved.getCreatedAt() == null) return;
+        long at = toEpochSeconds(saved.getCreatedAt());
+        long border = nowSeconds() - windowSeconds;
+        if (at < border) return;
+
+        long start = at - Math.floorMod(at, segmentSeconds);
+        byte flags = 0;
+        if (Boolean.TRUE.equals(saved.getIsSuspicious())) flags |= SUSPICIOUS;
+        if (Boolean.TRUE.equals(saved.getBiometryUsed())) flags |= BIOMETRY;
+        short eventType = eventTypeId(saved.getEventType() != null ? saved.getEventType() : "");
+        long userId = saved.getUserId() != null ? saved.getUserId() : 0L;
+        int countryId = saved.getCountryId() != null ? saved.getCountryId() : 0;
+
+        // Сегмент могли закрыть между поиском и записью - тогда берём новый
+        while (true) {
+            Segment segment = segments.computeIfAbsent(start, Segment::new);
+            if (segment.append(userId, saved.getIpAddress(), countryId, eventType, (int) (at - start), flags)) break;
+            segments.remove(start, segment);
+        }
+        if (events.incrementAndGet() > maxEvents) {
+            evictOldest();
+        }
+    }
+
+    // Количество событий по ключу группировки, по убыванию; limit <= 0 - все ключи
+    public HotWindowReport groupCount(GroupBy groupBy, Query query, int limit) {
+        long since = query.since() != null ? toEpochSeconds(query.since()) : Long.MIN_VALUE;
+        short eventType = -1;
+        if (query.eventType() != null) {
+            Short id = eventTypeIds.get(query.eventType());
+            if (id == null) return report(groupBy, query, List.of(), 0);
+            eventType = id;
+        }
+        byte flagValue = Boolean.TRUE.equals(query.suspicious()) ? SUSPICIOUS : 0;
+        byte flagMask = query.suspicious() != null ? SUSPICIOUS : 0;
+        Filter filter = new Filter(since, eventType, flagMask, flagValue,
+                query.userId() != null, query.userId() != null ? query.userId() : 0L);
+
+        // Сегменты, в которых есть события не раньше since
+        Map<Long, Segment> candidates = since == Long.MIN_VALUE ? segments : segments.tailMap(since - segmentSeconds, false);
+        Map<String, Long> totals = candidates.values().parallelStream()
+                .map(segment -> segment.groupCount(groupBy, filter, this))
+                .reduce(new HashMap<>(), HotEventWindow::merge);
+
+        long total = totals.values().stream().mapToLong(Long::longValue).sum();
+        List<HotWindowReport.Count> items = totals.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit > 0 ? limit : Long.MAX_VALUE)
+                .map(e -> new HotWindowReport.Count(e.getKey(), e.getValue()))
+                .toList();
+        return report(groupBy, query, items, total);
+    }
+
+    public Stats stats() {
+        long bytes = segments.values().stream().mapToLong(Segment::approxBytes).sum();
+        return new Stats(enabled, segments.size(), events.get(), bytes, coveredSince());
+    }
+
+    @Scheduled(fixedDelayString = "${security.hot-window.evict-interval-ms:60000}")
+    public void evictExpired() {
+        long border = nowSeconds() - windowSeconds;
+        // Сегмент уходит, только когда устарело его последнее событие
+        for (Map.Entry<Long, Segment> entry : segments.headMap(border - segmentSeconds, true).entrySet()) {
+            if (segments.remove(entry.getKey(), entry.getValue())) {
+                events.addAndGet(-entry.getValue().close());
+            }
+        }
+    }
+
+    // Лимит памяти: выбрасываем самый старый сегмент целиком
+    private void evictOldest() {
+        Map.Entry<Long, Segment> oldest = segments.pollFirstEntry();
+        if (oldest != null) {
+            events.addAndGet(-oldest.getValue().close());
+        }
+    }
+
+    private HotWindowReport report(GroupBy groupBy, Query query, List<HotWindowReport.Count> items, long total) {
+        LocalDateTime covered = coveredSince();
+        LocalDateTime since = query.since() != null && query.since().isAfter(covered) ? query.since() : covered;
+        return new HotWindowReport(groupBy.name(), since, covered, total, items);
+    }
+
+    // Начало периода, за который окно содержит все события
+    private LocalDateTime coveredSince() {
+        LocalDateTime windowStart = LocalDateTime.now().minusSeconds(windowSeconds);
+        return windowStart.isAfter(startedAt) ? windowStart : startedAt;
+    }
+
+    private short eventTypeId(String eventType) {
+        Short id = eventTypeIds.get(eventType);
+        if (id != null) return id;
+        synchronized (eventTypes) {
+            id = eventTypeIds.get(eventType);
+            if (id != null) return id;
+            if (eventTypes.size() >= MAX_EVENT_TYPES) return 0;
+            id = (short) eventTypes.size();
+            eventTypes.add(eventType);
+            eventTypeIds.put(eventType, id);
+            return id;
+        }
+    }
+
+    private String eventTypeName(int id) {
+        return eventTypes.get(id);
+    }
+
+    private String countryName(int id) {
+        String country = id != 0 ? dictionary.valueOf(MetadataDictionary.Kind.COUNTRY, id) : null;
+        return country != null ? country : "UNKNOWN";
+    }
+
+    private static Map<String, Long> merge(Map<String, Long> left, Map<String, Long> right) {
+        Map<String, Long> merged = new HashMap<>(left);
+        right.forEach((key, count) -> merged.merge(key, count, Long::sum));
+        return merged;
+    }
+
+    private static long toEpochSeconds(LocalDateTime time) {
+        return time.atZone(ZONE).toEpochSecond();
+    }
+
+    private static long nowSeconds() {
+        return Instant.now().getEpochSecond();
+    }
+
+    private record Filter(long since, short eventType, byte flagMask, byte flagValue, boolean byUser, long userId) {}
+
+    // Колонки одного сегмента; строки только дописываются, массивы растут копированием
+    private static final class Segment {
+
+        private final long start;
+        private final Map<String, Integer> ipIds = new HashMap<>();
+        private final List<String> ips = new ArrayList<>();
+        private long[] userIds = new long[INITIAL_CAPACITY];
+        private int[] ipColumn = new int[INITIAL_CAPACITY];
+        private int[] countryIds = new int[INITIAL_CAPACITY];
+        private short[] eventTypeIds = new short[INITIAL_CAPACITY];
+        // секунды от начала сегмента
+        private int[] offsets = new int[INITIAL_CAPACITY];
+        private byte[] flags = new byte[INITIAL_CAPACITY];
+        private int size;
+        private int maxCountryId;
+        private boolean closed;
+
+        Segment(long start) {
+            this.start = start;
+        }
+
+        synchronized boolean append(long userId, String ip, int countryId, short eventType, int offset, byte flag) {
+            if (closed) return false;
+            if (size == userIds.length) grow();
+            Integer ipId = ipIds.get(ip != null ? ip : "");
+            if (ipId == null) {
+                ipId = ips.size();
+                ips.add(ip != null ? ip : "");
+                ipIds.put(ips.get(ipId), ipId);
+            }
+            userIds[size] = userId;
+            ipColumn[size] = ipId;
+            countryIds[size] = countryId;
+            eventTypeIds[size] = eventType;
+            offsets[size] = offset;
+            flags[size] = flag;
+            maxCountryId = Math.max(maxCountryId, countryId);
+            size++;
+            return true;
+        }
+
+        // Закрыть для записи; возвращает число событий в сегменте
+        synchronized int close() {
+            closed = true;
+            return size;
+        }
+
+        synchronized long approxBytes() {
+            return (long) userIds.length * (8 + 4 + 4 + 2 + 4 + 1) + ips.size() * 64L;
+        }
+
+        Map<String, Long> groupCount(GroupBy groupBy, Filter filter, HotEventWindow window) {
+            // Снимок под блоком: строки до n уже не меняются, читаем их без блокировки
+            long[] users;
+            int[] keys;
+            short[] types;
+            int[] times;
+            byte[] flagColumn;
+            int n;
+            int cardinality;
+            synchronized (this) {
+                users = userIds;
+                types = eventTypeIds;
+                times = offsets;
+                flagColumn = flags;
+                n = size;
+                switch (groupBy) {
+                    case COUNTRY -> {
+                        keys = countryIds;
+                        cardinality = maxCountryId + 1;
+                    }
+                    case IP -> {
+                        keys = ipColumn;
+                        cardinality = ips.size();
+                    }
+                    default -> {
+                        keys = null;
+                        cardinality = MAX_EVENT_TYPES;
+                    }
+                }
+            }
+
+            // Сегмент целиком не раньше since - время не проверяем
+            int minOffset = filter.since() > start ? (int) Math.min(filter.since() - start, Integer.MAX_VALUE) : Integer.MIN_VALUE;
+            long[] counts = new long[cardinality];
+            for (int i = 0; i < n; i++) {
+                if (times[i] < minOffset) continue;
+                if (filter.eventType() >= 0 && types[i] != filter.eventType()) continue;
+                if ((flagColumn[i] & filter.flagMask()) != filter.flagValue()) continue;
+                if (filter.byUser() && users[i] != filter.userId()) continue;
+                counts[keys != null ? keys[i] : types[i]]++;
+            }
+
+            Map<String, Long> result = new HashMap<>();
+            for (int key = 0; key < counts.length; key++) {
+                if (counts[key] == 0) continue;
+                String label = switch (groupBy) {
+                    case COUNTRY -> window.countryName(key);
+                    case IP -> ip(key);
+                    case EVENT_TYPE -> window.eventTypeName(key);
+                };
+                result.merge(label, counts[key], Long::sum);
+            }
+            return result;
+        }
+
+        private synchronized String ip(int id) {
+            return ips.get(id);
+        }
+
+        private void grow() {
+            int capacity = userIds.length * 2;
+            userIds = Arrays.copyOf(userIds, capacity);
+            ipColumn = Arrays.copyOf(ipColumn, capacity);
+            countryIds = Arrays.copyOf(countryIds, capacity);
+            eventTypeIds = Arrays.copyOf(eventTypeIds, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+    }
+}
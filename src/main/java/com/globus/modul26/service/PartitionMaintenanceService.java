@@ -0,0 +1,162 @@
+package com.globus.modul26.service;
+
+import com.globus.modul26.repository.SuspiciousEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Обслуживание секций security_logs (см. V3__partition_security_logs.sql):
+ * заранее создаёт секции на precreate периодов вперёд и по сроку хранения
+ * удаляет (drop) или отсоединяет (detach) секции целиком - без DELETE,
+ * раздувания таблицы и долгого VACUUM.
+ * Новые секции продолжают последнюю существующую, поэтому смена
+ * granularity (monthly/daily) не даёт пересечений диапазонов.
+ */
+@Service
+public class PartitionMaintenanceService {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionMaintenanceService.class);
+
+    public enum Granularity { DAILY, MONTHLY }
+
+    private static final String PARENT = "security_logs";
+    private static final Pattern BOUNDS = Pattern.compile("FROM \\('([^']+)'\\) TO \\('([^']+)'\\)");
+    private static final DateTimeFormatter BOUND_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter NAME_FMT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    record Partition(String name, LocalDateTime from, LocalDateTime to) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SuspiciousEventRepository suspiciousEvents;
+    private final Granularity granularity;
+    private final int precreate;
+    private final int retentionDays;
+    private final boolean detachOnly;
+
+    public PartitionMaintenanceService(JdbcTemplate jdbcTemplate,
+                                       SuspiciousEventRepository suspiciousEvents,
+                                       @Value("${security.partitions.granularity:monthly}") String granularity,
+                                       @Value("${security.partitions.precreate:3}") int precreate,
+                                       @Value("${security.partitions.retention-days:365}") int retentionDays,
+                                       @Value("${security.partitions.retention-mode:drop}") String retentionMode) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.suspiciousEvents = suspiciousEvents;
+        this.granularity = Granularity.valueOf(granularity.trim().toUpperCase());
+        this.precreate = precreate;
+        this.retentionDays = retentionDays;
+        this.detachOnly = "detach".equalsIgnoreCase(retentionMode.trim());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${security.partitions.cron:0 15 0 * * *}")
+    public void maintain() {
+        try {
+            createAhead();
+            applyRetention();
+        } catch (DataAccessException e) {
+            log.error("security_logs partition maintenance failed", e);
+        }
+    }
+
+    void createAhead() {
+        LocalDateTime current = periodStart(LocalDate.now());
+        LocalDateTime horizon = current;
+        for (int i = 0; i <= precreate; i++) {
+            horizon = advance(horizon);
+        }
+        LocalDateTime next = partitions().stream()
+                .map(Partition::to)
+                .max(Comparator.naturalOrder())
+                .orElse(current);
+
+        while (next.isBefore(horizon)) {
+            LocalDateTime end = advance(next);
+            String name = PARENT + "_p" + NAME_FMT.format(next);
+            try {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + PARENT
+                        + " FOR VALUES FROM ('" + BOUND_FMT.format(next) + "') TO ('" + BOUND_FMT.format(end) + "')");
+            } catch (DataAccessException e) {
+                // Обычно - в default-секции уже лежат строки этого диапазона
+                log.warn("Cannot create partition {} [{}, {})", name, next, end, e);
+                return;
+            }
+            log.info("Created partition {} [{}, {})", name, next, end);
+            next = end;
+        }
+    }
+
+    void applyRetention() {
+        if (retentionDays <= 0) return;
+        LocalDateTime border = LocalDate.now().minusDays(retentionDays).atStartOfDay();
+        LocalDateTime expiredUntil = null;
+        for (Partition partition : partitions()) {
+            if (partition.to().isAfter(border)) continue;
+            if (expiredUntil == null || partition.to().isAfter(expiredUntil)) expiredUntil = partition.to();
+            if (detachOnly) {
+                jdbcTemplate.execute("ALTER TABLE " + PARENT + " DETACH PARTITION " + partition.name());
+                log.info("Detached expired partition {} (< {})", partition.name(), partition.to());
+            } else {
+                jdbcTemplate.execute("DROP TABLE " + partition.name());
+                log.info("Dropped expired partition {} (< {})", partition.name(), partition.to());
+            }
+        }
+        // Проекция живёт столько же, сколько события, на которые она ссылается
+        if (expiredUntil != null) {
+            int removed = suspiciousEvents.deleteBefore(expiredUntil);
+            log.info("Removed {} suspicious_events rows older than {}", removed, expiredUntil);
+        }
+    }
+
+    // Диапазонные секции родителя; default-секция в список не входит
+    List<Partition> partitions() {
+        List<Partition> result = new ArrayList<>();
+        jdbcTemplate.query("""
+                SELECT c.relname, pg_get_expr(c.relpartbound, c.oid)
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'security_logs'::regclass
+                """, rs -> {
+            Matcher m = BOUNDS.matcher(rs.getString(2));
+            if (m.find()) {
+                result.add(new Partition(rs.getString(1),
+                        LocalDateTime.parse(m.group(1), BOUND_FMT),
+                        LocalDateTime.parse(m.group(2), BOUND_FMT)));
+            }
+        });
+        return result;
+    }
+
+    private LocalDateTime periodStart(LocalDate day) {
+        return switch (granularity) {
+            case DAILY -> day.atStartOfDay();
+            case MONTHLY -> day.withDayOfMonth(1).atStartOfDay();
+        };
+    }
+
+    private LocalDateTime advance(LocalDateTime start) {
+        return switch (granularity) {
+            case DAILY -> start.plusDays(1);
+            case MONTHLY -> start.plusMonths(1);
+        };
+    }
+}
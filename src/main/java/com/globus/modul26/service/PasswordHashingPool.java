@@ -0,0 +1,76 @@
+package com.globus.modul26.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Отдельный пул для BCrypt: хэширование (~десятки мс CPU) не занимает потоки
+ * Tomcat и не конкурирует с ними без ограничений. Размер - threads (0 = число
+ * ядер), очередь ограничена queue-capacity; при переполнении задача
+ * выполняется в вызывающем потоке, что естественно притормаживает источник.
+ * Массовый импорт (encodeAll) идёт в свой пул на bulk-threads потоков (0 =
+ * половина основного) со своей очередью: пачки по тысяче паролей не занимают
+ * очередь регистрации, а при её переполнении хэширует поток импорта, а не
+ * потоки Tomcat с интерактивными запросами.
+ */
+@Component
+public class PasswordHashingPool {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor bulkExecutor;
+
+    public PasswordHashingPool(PasswordEncoder passwordEncoder,
+                               @Value("${security.password-hashing.threads:0}") int threads,
+                               @Value("${security.password-hashing.queue-capacity:1024}") int queueCapacity,
+                               @Value("${security.password-hashing.bulk-threads:0}") int bulkThreads,
+                               @Value("${security.password-hashing.bulk-queue-capacity:2048}") int bulkQueueCapacity) {
+        this.passwordEncoder = passwordEncoder;
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        int bulkSize = bulkThreads > 0 ? bulkThreads : Math.max(1, size / 2);
+        this.executor = newExecutor("password-hash-", size, queueCapacity);
+        this.bulkExecutor = newExecutor("password-hash-bulk-", bulkSize, bulkQueueCapacity);
+    }
+
+    private static ThreadPoolExecutor newExecutor(String namePrefix, int size, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, namePrefix + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public CompletableFuture<String> encode(String rawPassword) {
+        return CompletableFuture.supplyAsync(() -> passwordEncoder.encode(rawPassword), executor);
+    }
+
+    // Для импорта: хэши в порядке входного списка, параллельно в bulk-пуле
+    public CompletableFuture<List<String>> encodeAll(List<String> rawPasswords) {
+        List<CompletableFuture<String>> hashes = new ArrayList<>(rawPasswords.size());
+        for (String raw : rawPasswords) {
+            hashes.add(CompletableFuture.supplyAsync(() -> passwordEncoder.encode(raw), bulkExecutor));
+        }
+        return CompletableFuture.allOf(hashes.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> hashes.stream().map(CompletableFuture::join).toList());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        bulkExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,262 @@
+package com.globus.modul26.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.globus.modul26.dto.BulkIngestResponse;
+import com.globus.modul26.dto.BulkIngestResponse.RecordStatus;
+import com.globus.modul26.model.SecurityLog;
+import com.globus.modul26.repository.SecurityLogBatchRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Пакетный приём событий в формате NDJSON (одна JSON-запись SecurityLog на строку).
+ * Тело читается потоковым парсером Jackson (MappingIterator) и целиком в
+ * памяти не держится. Запись неверной структуры отклоняется, остальные
+ * принимаются; после синтаксической ошибки остаток тела пропускается.
+ * Записи копятся в пачки по chunk-size: обогащение идёт по пачке, оценка -
+ * по одной записи, запись в БД - одним многострочным INSERT (или в очередь
+ * async-режима). ip, устройство и время из записей принимаются только от ADMIN.
+ */
+@Service
+public class SecurityLogBulkIngestService {
+
+    private static final Logger log = LoggerFactory.getLogger(SecurityLogBulkIngestService.class);
+
+    private final SecurityLogService securityLogService;
+    private final SecurityLogEnricher enricher;
+    private final SecurityLogBatchRepository batchRepository;
+    private final SecurityLogIngestQueue ingestQueue;
+    private final MeterRegistry meterRegistry;
+    private final JsonFactory jsonFactory;
+    private final ObjectReader reader;
+    private final int chunkSize;
+    private final int maxRecords;
+    private final int maxRecordBytes;
+
+    // Кто и откуда прислал пачку; используется для записей без своих ip/user-agent
+    public record Source(Long userId, boolean admin, String clientIp, String userAgent) {}
+
+    public SecurityLogBulkIngestService(SecurityLogService securityLogService,
+                                        SecurityLogEnricher enricher,
+                                        SecurityLogBatchRepository batchRepository,
+                                        SecurityLogIngestQueue ingestQueue,
+                                        MeterRegistry meterRegistry,
+                                        ObjectMapper objectMapper,
+                                        @Value("${security.ingest.bulk.chunk-size:500}") int chunkSize,
+                                        @Value("${security.ingest.bulk.max-records:100000}") int maxRecords,
+                                        @Value("${security.ingest.bulk.max-record-bytes:16384}") int maxRecordBytes) {
+        this.securityLogService = securityLogService;
+        this.enricher = enricher;
+        this.batchRepository = batchRepository;
+        this.ingestQueue = ingestQueue;
+        this.meterRegistry = meterRegistry;
+        // Ни одно строковое значение не длиннее лимита записи: огромное значение не попадёт в память целиком
+        this.jsonFactory = objectMapper.getFactory().rebuild()
+                .streamReadConstraints(StreamReadConstraints.builder()
+                        .maxStringLength(maxRecordBytes)
+                        .maxNestingDepth(32)
+                        .build())
+                .build();
+        this.reader = objectMapper.readerFor(SecurityLog.class);
+        this.chunkSize = chunkSize;
+        this.maxRecords = maxRecords;
+        this.maxRecordBytes = maxRecordBytes;
+    }
+
+    public BulkIngestResponse ingest(InputStream body, boolean gzip, Source source) throws IOException {
+        InputStream in = gzip ? new GZIPInputStream(body, 64 * 1024) : body;
+
+        Batch batch = new Batch();
+        int received = 0;
+        try (JsonParser parser = jsonFactory.createParser(in);
+             MappingIterator<SecurityLog> records = reader.readValues(parser)) {
+            while (true) {
+                int lineNo = parser.currentLocation().getLineNr();
+                long startOffset = 0;
+                boolean counted = false;
+                SecurityLog event;
+                try {
+                    if (!records.hasNextValue()) break;
+                    JsonLocation at = parser.currentTokenLocation();
+                    lineNo = at.getLineNr();
+                    startOffset = at.getByteOffset();
+                    if (received == maxRecords) {
+                        batch.statuses.add(new RecordStatus(lineNo, "skipped", null,
+                                "record limit " + maxRecords + " reached, rest of body ignored"));
+                        break;
+                    }
+                    received++;
+                    counted = true;
+                    event = records.nextValue();
+                } catch (JsonProcessingException e) {
+                    if (e instanceof DatabindException && !(e.getCause() instanceof JsonProcessingException)) {
+                        // Запись синтаксически цельная, итератор сам перейдёт к следующей
+                        batch.invalid(lineNo, e.getOriginalMessage());
+                        continue;
+                    }
+                    // Синтаксическая ошибка или превышен лимит: границу следующей записи в потоке уже не найти
+                    if (!counted) received++;
+                    batch.invalid(lineNo, e.getOriginalMessage());
+                    batch.statuses.add(new RecordStatus(lineNo, "skipped", null, "malformed record, rest of body ignored"));
+                    break;
+                }
+                if (parser.currentLocation().getByteOffset() - startOffset > maxRecordBytes) {
+                    batch.invalid(lineNo, "record exceeds " + maxRecordBytes + " bytes");
+                    continue;
+                }
+                if (event == null || event.getEventType() == null || event.getEventType().isBlank()) {
+                    batch.invalid(lineNo, "eventType is required");
+                    continue;
+                }
+
+                event.setId(null);
+                String clientIp = source.clientIp();
+                String userAgent = source.userAgent();
+                if (source.admin()) {
+                    // Шлюз (ADMIN) пересылает чужие события с их исходными IP, устройством и временем
+                    if (event.getUserId() == null) event.setUserId(source.userId());
+                    if (event.getIpAddress() != null) clientIp = event.getIpAddress();
+                    if (event.getDeviceInfo() != null) userAgent = event.getDeviceInfo();
+                } else {
+                    // Остальные - только свои события, с IP и устройством самого запроса и текущим временем
+                    event.setUserId(source.userId());
+                    event.setCreatedAt(null);
+                }
+                batch.add(lineNo, event, clientIp, userAgent);
+
+                if (batch.size() == chunkSize) {
+                    process(batch);
+                }
+            }
+        }
+        process(batch);
+
+        return new BulkIngestResponse(received, batch.persisted, batch.suspicious, batch.failed, batch.statuses);
+    }
+
+    private void process(Batch batch) {
+        if (batch.size() == 0) return;
+        enricher.enrichAll(batch.logs, batch.clientIps, batch.userAgents);
+
+        // Оценка по одной записи: каждая учитывается в профиле и счётчиках до оценки следующей,
+        // так что всплеск неудачных входов или новое устройство внутри пачки видны правилам
+        List<SecurityLog> prepared = new ArrayList<>(batch.size());
+        int[] slots = new int[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            SecurityLog event;
+            try {
+                event = securityLogService.prepareLog(batch.logs.get(i));
+            } catch (RuntimeException e) {
+                log.warn("Bulk record on line {} could not be scored", batch.lines.get(i), e);
+                batch.complete(i, "failed", null, "scoring failed");
+                continue;
+            }
+            if (ingestQueue.isEnabled()) {
+                if (ingestQueue.submit(event)) {
+                    batch.complete(i, "accepted", event.getIsSuspicious(), null);
+                } else {
+                    batch.complete(i, "rejected", null, "ingest queue is full");
+                }
+            } else {
+                securityLogService.recordBehavior(event);
+                slots[prepared.size()] = i;
+                prepared.add(event);
+            }
+        }
+
+        persist(batch, prepared, slots);
+        batch.reset();
+    }
+
+    // Пачка пишется одним INSERT: либо вся, либо никак
+    private void persist(Batch batch, List<SecurityLog> prepared, int[] slots) {
+        if (prepared.isEmpty()) return;
+        try {
+            batchRepository.insertAll(prepared);
+        } catch (RuntimeException e) {
+            log.error("Failed to write bulk chunk of {} security logs", prepared.size(), e);
+            securityLogService.discardBehavior(prepared);
+            for (int j = 0; j < prepared.size(); j++) {
+                batch.complete(slots[j], "failed", null, "persistence failed");
+            }
+            return;
+        }
+        for (int j = 0; j < prepared.size(); j++) {
+            SecurityLog saved = prepared.get(j);
+            securityLogService.onPersisted(saved);
+            batch.complete(slots[j], "created", saved.getIsSuspicious(), null);
+        }
+    }
+
+    // Текущая пачка и статусы всех строк запроса (в порядке строк)
+    private class Batch {
+        final List<RecordStatus> statuses = new ArrayList<>();
+        final List<SecurityLog> logs = new ArrayList<>(chunkSize);
+        final List<String> clientIps = new ArrayList<>(chunkSize);
+        final List<String> userAgents = new ArrayList<>(chunkSize);
+        final List<Integer> lines = new ArrayList<>(chunkSize);
+        int[] statusIndex = new int[chunkSize];
+        int persisted;
+        int suspicious;
+        int failed;
+
+        int size() {
+            return logs.size();
+        }
+
+        void add(int line, SecurityLog event, String clientIp, String userAgent) {
+            if (logs.size() == statusIndex.length) {
+                statusIndex = Arrays.copyOf(statusIndex, statusIndex.length * 2);
+            }
+            statusIndex[logs.size()] = statuses.size();
+            statuses.add(null); // заполнится после записи пачки
+            logs.add(event);
+            clientIps.add(clientIp);
+            userAgents.add(userAgent);
+            lines.add(line);
+        }
+
+        void invalid(int line, String error) {
+            statuses.add(new RecordStatus(line, "invalid", null, error));
+            meterRegistry.counter("ingest.bulk.records", "status", "invalid").increment();
+            failed++;
+        }
+
+        void complete(int i, String status, Boolean isSuspicious, String error) {
+            statuses.set(statusIndex[i], new RecordStatus(lines.get(i), status, isSuspicious, error));
+            meterRegistry.counter("ingest.bulk.records", "status", status).increment();
+            switch (status) {
+                case "created", "accepted" -> {
+                    persisted++;
+                    if (Boolean.TRUE.equals(isSuspicious)) suspicious++;
+                }
+                default -> failed++;
+            }
+        }
+
+        void reset() {
+            logs.clear();
+            clientIps.clear();
+            userAgents.clear();
+            lines.clear();
+        }
+    }
+}
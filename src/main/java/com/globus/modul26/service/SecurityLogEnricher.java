@@ -0,0 +1,92 @@
+package com.globus.modul26.service;
+
+import com.globus.modul26.dto.GeoLocation;
+import com.globus.modul26.dto.UserAgentInfo;
+import com.globus.modul26.model.SecurityLog;
+import com.globus.modul26.util.UserAgentClassifier;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Обогащение входящего события до оценки: маскировка IP, разбор User-Agent,
+ * геолокация. Общее для одиночного /api/logs/event и пакетного /api/logs/events.
+ */
+@Component
+public class SecurityLogEnricher {
+
+    private final GeoService geoService;
+    private final UserAgentClassifier userAgentClassifier;
+
+    public SecurityLogEnricher(GeoService geoService, UserAgentClassifier userAgentClassifier) {
+        this.geoService = geoService;
+        this.userAgentClassifier = userAgentClassifier;
+    }
+
+    public void enrich(SecurityLog log, String clientIp, String userAgent) {
+        enrich(log, clientIp, userAgent, geoService.lookup(clientIp)); // локальная база, без сетевых вызовов
+    }
+
+    // Пачка событий: одинаковые IP внутри пачки ищутся в гео-базе один раз
+    public void enrichAll(List<SecurityLog> logs, List<String> clientIps, List<String> userAgents) {
+        Map<String, GeoLocation> geoByIp = new HashMap<>();
+        for (int i = 0; i < logs.size(); i++) {
+            String clientIp = clientIps.get(i);
+            GeoLocation geo = geoByIp.computeIfAbsent(clientIp == null ? "" : clientIp, geoService::lookup);
+            enrich(logs.get(i), clientIp, userAgents.get(i), geo);
+        }
+    }
+
+    private void enrich(SecurityLog log, String clientIp, String userAgent, GeoLocation geo) {
+        String maskedIp = maskIp(clientIp);
+
+        //  Гарантированная маскировка и защита от null/UNKNOWN/localhost
+        if (maskedIp == null || maskedIp.trim().isEmpty() || maskedIp.equals("null") ||
+                maskedIp.toLowerCase().contains("unknown") ||
+                maskedIp.equals("0:0:0:0:0:0:0:1") || maskedIp.equals("127.0.0.1")) {
+            maskedIp = "UNKNOWN";
+        }
+        log.setIpAddress(maskedIp);
+        log.setDeviceInfo(userAgent);
+
+        UserAgentInfo agent = userAgentClassifier.classify(userAgent); // один проход по строке, повторы - из кэша
+
+        // Горячие ключи - в типизированные поля (словари), остальное - в метаданные
+        log.promoteHotKeys();
+        log.setCountry(geo.countryIso3());
+        log.setCity(geo.city());
+        if (!"Unknown".equals(agent.platform())) {
+            log.setPlatform(agent.platform());
+        }
+        if (!"Unknown".equals(agent.browser())) {
+            log.setBrowser(agent.browser());
+        }
+        Map<String, Object> metadataMap = log.getMetadata() != null
+                ? new HashMap<>(log.getMetadata())
+                : new HashMap<>();
+        metadataMap.put("country_name", geo.countryName());
+        if (!"unknown".equals(agent.deviceClass())) {
+            metadataMap.put("device_class", agent.deviceClass());
+        }
+        log.setMetadata(metadataMap);
+
+        log.setIsSuspicious(null);
+
+        if (log.getBiometryUsed() == null) {
+            log.setBiometryUsed(false);
+        }
+    }
+
+    //  Маскирует IP-адрес
+    public static String maskIp(String ip) {
+        if (ip == null) return null;
+        String[] parts = ip.split("\\.");
+        if (parts.length != 4) return ip; // если это IPv6 или некорректно, возвращаем как есть
+        String first = parts[0];
+        String second = parts[1].isEmpty() ? "*" : parts[1].substring(0, 1);
+        String fourth = parts[3];
+        return String.format("%s.%s**.***.%s", first, second, fourth);
+    }
+}
@@ -0,0 +1,122 @@
+package com.globus.modul26.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.globus.modul26.dto.SecurityLogView;
+import com.globus.modul26.dto.SecurityLogViewPage;
+import com.globus.modul26.repository.SecurityLogHistoryRepository;
+import com.globus.modul26.repository.SecurityLogHistoryRepository.Cursor;
+import com.globus.modul26.repository.SecurityLogHistoryRepository.Field;
+import com.globus.modul26.repository.SecurityLogHistoryRepository.Row;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * История событий пользователя без полной материализации: страницы по
+ * курсору (created_at, id) или потоковая выдача NDJSON прямо из
+ * JDBC-курсора. Курсор для клиента непрозрачен (base64url от
+ * "createdAt|id"). fields - имена полей SecurityLog через запятую;
+ * пусто - все поля.
+ */
+@Service
+public class SecurityLogHistoryService {
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final SecurityLogHistoryRepository repository;
+    private final TransactionTemplate readOnlyTx;
+    private final ObjectMapper objectMapper;
+    // Без flush после каждой строки - буферизует сам ответ сервлета
+    private final ObjectWriter rowWriter;
+    private final int fetchSize;
+
+    public SecurityLogHistoryService(SecurityLogHistoryRepository repository,
+                                     PlatformTransactionManager transactionManager,
+                                     ObjectMapper objectMapper,
+                                     @Value("${security.history.stream-fetch-size:500}") int fetchSize) {
+        this.repository = repository;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.rowWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.fetchSize = fetchSize;
+    }
+
+    public SecurityLogViewPage page(Long userId, String cursor, int limit, String fields) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<Row> rows = repository.page(userId, decode(cursor), pageSize, parseFields(fields));
+        String next = rows.size() == pageSize ? encode(rows.get(rows.size() - 1).position()) : null;
+        return new SecurityLogViewPage(rows.stream().map(Row::view).toList(), next);
+    }
+
+    // Одна строка JSON на событие; память не зависит от размера истории
+    public void stream(Long userId, String cursor, String fields, OutputStream out) throws IOException {
+        Cursor after = decode(cursor);
+        Set<Field> selected = parseFields(fields);
+        JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+        json.setRootValueSeparator(null);
+        try {
+            readOnlyTx.executeWithoutResult(status ->
+                    repository.stream(userId, after, selected, fetchSize, row -> write(json, row.view())));
+        } catch (UncheckedIOException e) {
+            // Клиент закрыл соединение - запрос (и курсор в БД) прекращается
+            throw e.getCause();
+        }
+        json.flush();
+    }
+
+    // Проверка параметров до начала потоковой выдачи, чтобы ошибка пришла как 400, а не обрывом ответа
+    public void validate(String cursor, String fields) {
+        decode(cursor);
+        parseFields(fields);
+    }
+
+    private void write(JsonGenerator json, SecurityLogView view) {
+        try {
+            rowWriter.writeValue(json, view);
+            json.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Set<Field> parseFields(String fields) {
+        if (fields == null || fields.isBlank()) return EnumSet.allOf(Field.class);
+        Set<Field> selected = EnumSet.noneOf(Field.class);
+        for (String name : fields.split(",")) {
+            if (!name.isBlank()) selected.add(Field.of(name));
+        }
+        return selected.isEmpty() ? EnumSet.allOf(Field.class) : selected;
+    }
+
+    static String encode(Cursor cursor) {
+        String raw = cursor.createdAt() + "|" + cursor.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Cursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            return new Cursor(LocalDateTime.parse(raw.substring(0, sep)), Integer.parseInt(raw.substring(sep + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.globus.modul26.service;
+
+import com.globus.modul26.model.SecurityLog;
+import com.globus.modul26.repository.SecurityLogBatchRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Асинхронный режим приёма событий (security.ingest.mode=async).
+ * Проверенные и оценённые события кладутся в ограниченную очередь,
+ * пул писателей выгружает их пачками по batch-size штук или раз в
+ * flush-interval-ms многострочным INSERT.
+ * Если очередь заполнена дольше offer-timeout-ms, submit возвращает false
+ * и контроллер отвечает 503. При остановке приложения новые события не
+ * принимаются, а уже принятые дописываются в БД.
+ *
+ * Гарантия доставки: 202 означает, что событие принято в память процесса,
+ * а не записано. Пачка, которую не удалось вставить, повторяется с
+ * экспоненциальной задержкой (retry-attempts, retry-backoff-ms); пока писатель
+ * ждёт, очередь заполняется и приём отвечает 503. Если повторы исчерпаны,
+ * события пишутся по одному, чтобы одна некорректная строка не стоила всей
+ * пачки. Незаписанные события, а также оставшиеся в очереди после
+ * shutdown-timeout-ms, теряются: они логируются и считаются в
+ * security.ingest.dropped. При аварийном завершении процесса содержимое
+ * очереди теряется без учёта. Обрыв соединения после фиксации INSERT
+ * может дать дубль при повторе.
+ */
+@Component
+public class SecurityLogIngestQueue implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(SecurityLogIngestQueue.class);
+
+    private final SecurityLogBatchRepository batchRepository;
+    private final SecurityLogService securityLogService;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long offerTimeoutMs;
+    private final long shutdownTimeoutMs;
+    private final int writerCount;
+    private final int retryAttempts;
+    private final long retryBackoffMs;
+    private final long retryBackoffMaxMs;
+    private final BlockingQueue<SecurityLog> queue;
+    private final Counter retries;
+    private final Counter dropped;
+
+    private final List<Thread> writers = new ArrayList<>();
+    private volatile boolean accepting;
+    private volatile boolean running;
+
+    public SecurityLogIngestQueue(SecurityLogBatchRepository batchRepository,
+                                  SecurityLogService securityLogService,
+                                  @Value("${security.ingest.mode:sync}") String mode,
+                                  @Value("${security.ingest.queue-capacity:10000}") int queueCapacity,
+                                  @Value("${security.ingest.batch-size:500}") int batchSize,
+                                  @Value("${security.ingest.flush-interval-ms:50}") long flushIntervalMs,
+                                  @Value("${security.ingest.offer-timeout-ms:20}") long offerTimeoutMs,
+                                  @Value("${security.ingest.shutdown-timeout-ms:30000}") long shutdownTimeoutMs,
+                                  @Value("${security.ingest.writers:2}") int writerCount,
+                                  @Value("${security.ingest.retry-attempts:5}") int retryAttempts,
+                                  @Value("${security.ingest.retry-backoff-ms:100}") long retryBackoffMs,
+                                  @Value("${security.ingest.retry-backoff-max-ms:5000}") long retryBackoffMaxMs,
+                                  MeterRegistry meterRegistry) {
+        this.batchRepository = batchRepository;
+        this.securityLogService = securityLogService;
+        this.enabled = "async".equalsIgnoreCase(mode);
+        // 13 параметров на строку, лимит протокола Postgres - 65535
+        this.batchSize = Math.min(Math.max(1, batchSize), 5000);
+        this.flushIntervalMs = flushIntervalMs;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.writerCount = writerCount;
+        this.retryAttempts = Math.max(1, retryAttempts);
+        this.retryBackoffMs = retryBackoffMs;
+        this.retryBackoffMaxMs = retryBackoffMaxMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.retries = Counter.builder("security.ingest.retries")
+                .description("Failed batch inserts retried by async ingestion")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("security.ingest.dropped")
+                .description("Accepted events that were never written to the database")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int depth() {
+        return queue.size();
+    }
+
+    // false - очередь переполнена или приём уже остановлен. Событие учитывается в профиле
+    // и счётчиках до постановки в очередь, чтобы следующие оценивались уже с ним
+    public boolean submit(SecurityLog prepared) {
+        if (!accepting) return false;
+        securityLogService.recordBehavior(prepared);
+        boolean accepted;
+        try {
+            accepted = queue.offer(prepared, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            securityLogService.discardBehavior(List.of(prepared));
+        }
+        return accepted;
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) return;
+        running = true;
+        accepting = true;
+        for (int i = 0; i < writerCount; i++) {
+            Thread writer = new Thread(this::drainLoop, "security-log-writer-" + i);
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+        log.info("Async ingestion enabled: {} writers, batch {} rows / {} ms", writerCount, batchSize, flushIntervalMs);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) return;
+        accepting = false;
+        running = false;
+        long deadline = System.currentTimeMillis() + shutdownTimeoutMs;
+        for (Thread writer : writers) {
+            try {
+                writer.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        writers.clear();
+        if (!queue.isEmpty()) {
+            log.error("Async ingestion stopped with {} events not written", queue.size());
+            dropped.increment(queue.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Останавливаемся после веб-сервера (WebServerStartStopLifecycle, DEFAULT_PHASE - 2048),
+    // чтобы дописать всё, что он успел принять
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 3072;
+    }
+
+    private void drainLoop() {
+        List<SecurityLog> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                SecurityLog first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                long flushAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    long waitNanos = flushAt - System.nanoTime();
+                    if (waitNanos <= 0) {
+                        queue.drainTo(batch, batchSize - batch.size());
+                        break;
+                    }
+                    SecurityLog next = queue.poll(waitNanos, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (!batch.isEmpty()) flush(batch);
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<SecurityLog> batch) {
+        List<SecurityLog> written = batch;
+        if (!insertWithRetry(batch)) {
+            // Повторы исчерпаны: по одному, чтобы некорректная строка не потянула за собой всю пачку
+            written = new ArrayList<>(batch.size());
+            List<SecurityLog> lost = new ArrayList<>();
+            for (SecurityLog event : batch) {
+                try {
+                    batchRepository.insertAll(List.of(event));
+                    written.add(event);
+                } catch (RuntimeException e) {
+                    log.error("Dropping security log: user {}, {} at {}",
+                            event.getUserId(), event.getEventType(), event.getCreatedAt(), e);
+                    lost.add(event);
+                }
+            }
+            if (!lost.isEmpty()) {
+                dropped.increment(lost.size());
+                securityLogService.discardBehavior(lost);
+            }
+        }
+        for (SecurityLog saved : written) {
+            // Пачка уже в БД: сбой пост-обработки одного события не должен остановить поток писателя
+            try {
+                securityLogService.onPersisted(saved);
+            } catch (RuntimeException e) {
+                log.error("Post-processing failed for security log {}", saved.getId(), e);
+            }
+        }
+    }
+
+    // INSERT пачки атомарен, поэтому повтор не оставляет частично записанных строк
+    private boolean insertWithRetry(List<SecurityLog> batch) {
+        long backoff = retryBackoffMs;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                batchRepository.insertAll(batch);
+                return true;
+            } catch (RuntimeException e) {
+                if (attempt >= retryAttempts) {
+                    log.error("Failed to write batch of {} security logs after {} attempts", batch.size(), attempt, e);
+                    return false;
+                }
+                log.warn("Failed to write batch of {} security logs, retry {} in {} ms: {}",
+                        batch.size(), attempt, backoff, e.getMessage());
+                retries.increment();
+                try {
+                    TimeUnit.MILLISECONDS.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                backoff = Math.min(backoff * 2, retryBackoffMaxMs);
+            }
+        }
+    }
+}
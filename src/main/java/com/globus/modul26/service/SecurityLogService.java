@@ -1,23 +1,40 @@
 package com.globus.modul26.service;
 
+import com.globus.modul26.dto.SecurityLogPage;
+import com.globus.modul26.dto.SuspiciousEventPage;
 import com.globus.modul26.model.SecurityLog;
+import com.globus.modul26.repository.SuspiciousEventRepository;
+import java.util.Collection;
 import java.util.List;
 
 public interface SecurityLogService {
     SecurityLog saveLog(SecurityLog log);
-    boolean isNewIp(Long userId, String currentIp);
-    boolean isNewGeo(Long userId, String currentGeoLocation);
-    boolean isNewDevice(Long userId, String currentDeviceInfo);
-    boolean hasTooManyFailedAttempts(Long userId);
-    boolean hasTooManyPasswordChanges(Long userId);
-    boolean isLoginWithoutBiometryWhereWasBiometryBefore(Long userId, SecurityLog log);
+
+    // Нормализация и оценка события без записи в БД (для пакетной записи)
+    SecurityLog prepareLog(SecurityLog log);
+
+    // Учесть ещё не записанное в БД событие в профиле и оконных счётчиках
+    // (пакетный и асинхронный приём): следующие события оцениваются уже с ним
+    void recordBehavior(SecurityLog log);
+
+    // Учтённые события не записались - профили и счётчики их пользователей строятся заново из БД
+    void discardBehavior(Collection<SecurityLog> notPersisted);
+
+    // Пост-обработка уже записанного события: проекция suspicious_events, окно аналитики, CEF
+    void onPersisted(SecurityLog saved);
+
     boolean isBlacklistedCountry(String geoLocation);
-    boolean isUserAgentMismatch(Long userId, String currentDeviceInfo);
-    List<SecurityLog> findSuspiciousLogs();
+
+    // rescore=false - доверяем сохранённому is_suspicious, true - заново оцениваем историю
+    SecurityLogPage findSuspiciousLogs(Integer cursor, int limit, boolean rescore);
+
     List<SecurityLog> findByUserId(Long userId);
 
-    // 👉 Было:
-    List<SecurityLog> findSuspiciousLogsByUserId(Long userId);
+    // Страница проекции suspicious_events пользователя (keyset по logId)
+    SuspiciousEventPage findSuspiciousEventsByUserId(Long userId, Integer cursor, int limit);
+
+    // Сверить suspicious_events с историей security_logs
+    SuspiciousEventRepository.RebuildResult rebuildSuspiciousEvents();
 
     // 👇 ДОБАВЬ ЭТОТ МЕТОД!
     List<SecurityLog> getLastLoginAttempts(Long userId, int limit);
@@ -1,29 +1,90 @@
 package com.globus.modul26.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.globus.modul26.dto.SecurityLogPage;
+import com.globus.modul26.dto.SuspiciousEvent;
+import com.globus.modul26.dto.SuspiciousEventPage;
+import com.globus.modul26.dto.UserAgentInfo;
+import com.globus.modul26.integrations.CefEventWriter;
+import com.globus.modul26.integrations.SIEMExporter;
 import com.globus.modul26.model.SecurityLog;
 import com.globus.modul26.repository.SecurityLogRepository;
-import com.globus.modul26.util.CefUtil;
+import com.globus.modul26.repository.SuspiciousEventRepository;
+import com.globus.modul26.util.UserAgentClassifier;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.Serial;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 @Service
 public class SecurityLogServiceImpl implements SecurityLogService {
 
+    private static final Logger logger = LoggerFactory.getLogger(SecurityLogServiceImpl.class);
+
     private final SecurityLogRepository repository;
-    private static final Set<String> BLACKLISTED_COUNTRIES = Set.of(
-            "USA", "UKR", "POL"
-    );
-    private static final Logger cefLogger = LoggerFactory.getLogger("cefLogger");
+    private final UserProfileCache profileCache;
+    private final EventWindowCounters counters;
+    private final CefEventWriter cefEventWriter;
+    private final SIEMExporter siemExporter;
+    private final UserAgentClassifier userAgentClassifier;
+    private final DetectionEngine detectionEngine;
+    private final SuspiciousEventRepository suspiciousEvents;
+    private final HotEventWindow hotWindow;
+    private final Counter projectionFailures;
+    private static final int MAX_PAGE_SIZE = 1000;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    public SecurityLogServiceImpl(SecurityLogRepository repository) {
+    // Пул для переоценки истории: диапазон id режется на куски, куски оцениваются параллельно
+    private final ForkJoinPool rescorePool;
+    private final int rescoreLeafSize;
+    private final int rescoreMaxScan;
+
+    public SecurityLogServiceImpl(SecurityLogRepository repository,
+                                  UserProfileCache profileCache,
+                                  EventWindowCounters counters,
+                                  CefEventWriter cefEventWriter,
+                                  SIEMExporter siemExporter,
+                                  UserAgentClassifier userAgentClassifier,
+                                  DetectionEngine detectionEngine,
+                                  SuspiciousEventRepository suspiciousEvents,
+                                  HotEventWindow hotWindow,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${security.rescore.parallelism:4}") int rescoreParallelism,
+                                  @Value("${security.rescore.leaf-size:500}") int rescoreLeafSize,
+                                  @Value("${security.rescore.max-scan:50000}") int rescoreMaxScan) {
         this.repository = repository;
+        this.profileCache = profileCache;
+        this.counters = counters;
+        this.cefEventWriter = cefEventWriter;
+        this.siemExporter = siemExporter;
+        this.userAgentClassifier = userAgentClassifier;
+        this.detectionEngine = detectionEngine;
+        this.suspiciousEvents = suspiciousEvents;
+        this.hotWindow = hotWindow;
+        this.projectionFailures = Counter.builder("suspicious.events.append.failures")
+                .description("Suspicious events missing from the suspicious_events projection until rebuild")
+                .register(meterRegistry);
+        this.rescorePool = new ForkJoinPool(rescoreParallelism);
+        this.rescoreLeafSize = rescoreLeafSize;
+        this.rescoreMaxScan = rescoreMaxScan;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rescorePool.shutdownNow();
     }
 
     // --- ВАЖНО: Добавляем универсальный метод парсинга geoJson ---
@@ -51,16 +112,13 @@ public class SecurityLogServiceImpl implements SecurityLogService {
     public void logEvent(Long userId, String eventType, String ipAddress, String deviceInfo, Boolean biometryUsed, String geoJsonString) {
         Map<String, String> geo = parseCountryAndCityFromGeoJson(geoJsonString);
 
-        Map<String, Object> metadata = new HashMap<>();
-        metadata.put("country", geo.get("country"));
-        metadata.put("city", geo.get("city"));
-
         SecurityLog log = SecurityLog.builder()
                 .userId(userId)
                 .eventType(eventType)
                 .ipAddress(ipAddress)
                 .deviceInfo(deviceInfo)
-                .metadata(metadata)
+                .country(geo.get("country"))
+                .city(geo.get("city"))
                 .biometryUsed(biometryUsed)
                 .createdAt(LocalDateTime.now())
                 .build();
@@ -72,16 +130,13 @@ public class SecurityLogServiceImpl implements SecurityLogService {
     public void logLoginAttempt(Long userId, String ipAddress, String deviceInfo, boolean success, String geoJsonString) {
         Map<String, String> geo = parseCountryAndCityFromGeoJson(geoJsonString);
 
-        Map<String, Object> metadata = new HashMap<>();
-        metadata.put("country", geo.get("country"));
-        metadata.put("city", geo.get("city"));
-
         SecurityLog log = SecurityLog.builder()
                 .userId(userId)
                 .eventType("LOGIN_ATTEMPT")
                 .ipAddress(ipAddress)
                 .deviceInfo(deviceInfo)
-                .metadata(metadata)
+                .country(geo.get("country"))
+                .city(geo.get("city"))
                 .biometryUsed(false)
                 .createdAt(LocalDateTime.now())
                 .isSuspicious(!success)
@@ -93,6 +148,25 @@ public class SecurityLogServiceImpl implements SecurityLogService {
     @Override
     @Transactional
     public SecurityLog saveLog(SecurityLog log) {
+        prepareLog(log);
+
+        SecurityLog saved = repository.save(log);
+        // Проекция - в той же транзакции (JDBC-точка сохранения), остальное - после фиксации:
+        // откаченное событие не должно попасть ни в профиль, ни в SIEM
+        if (Boolean.TRUE.equals(saved.getIsSuspicious())) {
+            appendSuspicious(saved);
+        }
+        afterCommit(() -> {
+            // Уже в БД: незагруженные профили и счётчики соберутся из истории вместе с ним
+            profileCache.record(saved);
+            counters.record(saved);
+            publish(saved);
+        });
+        return saved;
+    }
+
+    @Override
+    public SecurityLog prepareLog(SecurityLog log) {
         // 🛡️ Не даём null/ip пустыми в базу!
         if (log.getIpAddress() == null || log.getIpAddress().trim().isEmpty()
                 || "null".equalsIgnoreCase(log.getIpAddress())
@@ -105,133 +179,169 @@ public class SecurityLogServiceImpl implements SecurityLogService {
             log.setCreatedAt(LocalDateTime.now());
         }
 
-        if (log.getMetadata() == null) {
-            log.setMetadata(new HashMap<>());
+        log.promoteHotKeys();
+        if (log.getCountry() == null) {
+            log.setCountry("UNKNOWN");
         }
-        if (!log.getMetadata().containsKey("country")) {
-            log.getMetadata().put("country", "UNKNOWN");
+        if (log.getCity() == null) {
+            log.setCity("UNKNOWN");
         }
-        if (!log.getMetadata().containsKey("city")) {
-            log.getMetadata().put("city", "UNKNOWN");
+        // События не из контроллера (например, попытки входа) приходят без разбора User-Agent
+        if (log.getDeviceInfo() != null && log.getPlatform() == null && log.getBrowser() == null) {
+            UserAgentInfo agent = userAgentClassifier.classify(log.getDeviceInfo());
+            if (!"Unknown".equals(agent.platform())) {
+                log.setPlatform(agent.platform());
+            }
+            if (!"Unknown".equals(agent.browser())) {
+                log.setBrowser(agent.browser());
+            }
         }
 
         if (log.getIsSuspicious() == null) {
-            log.setIsSuspicious(isSuspicious(log));
-        }
-
-        SecurityLog saved = repository.save(log);
-
-        if (Boolean.TRUE.equals(saved.getIsSuspicious())) {
-            Map<String, String> extension = new HashMap<>();
-            extension.put("userId", String.valueOf(saved.getUserId()));
-            extension.put("eventType", saved.getEventType());
-            extension.put("ip", saved.getIpAddress());
-
-            if (saved.getDeviceInfo() != null)
-                extension.put("device_info", saved.getDeviceInfo());
-
-            if (saved.getBiometryUsed() != null)
-                extension.put("biometry", saved.getBiometryUsed().toString());
-
-            extension.put("isSuspicious", String.valueOf(saved.getIsSuspicious()));
-            extension.put("country", saved.getMetadata().get("country").toString());
-            extension.put("city", saved.getMetadata().get("city").toString());
-
-            String cefLog = CefUtil.toCef(
-                    "1001",
-                    saved.getEventType(),
-                    8,
-                    extension
-            );
-            cefLogger.info(cefLog);
+            List<DetectionMetrics.Rule> fired = detectionEngine.detect(log);
+            log.setIsSuspicious(!fired.isEmpty());
+            log.setFiredRules(fired.stream().map(DetectionMetrics.Rule::tag).toList());
         }
-        return saved;
+        return log;
     }
 
     @Override
-    public boolean isNewIp(Long userId, String currentIp) {
-        if (currentIp == null) return false;
-        List<SecurityLog> logs = repository.findByUserId(userId);
-        return logs.stream().noneMatch(log -> currentIp.equals(log.getIpAddress()));
+    public void recordBehavior(SecurityLog log) {
+        profileCache.recordPending(log);
+        counters.recordPending(log);
     }
 
     @Override
-    public boolean isNewGeo(Long userId, String currentGeoLocation) {
-        if (currentGeoLocation == null) return false;
-        String[] parts = currentGeoLocation.split(",");
-        if (parts.length < 2) return false;
-        String country = parts[0].trim();
-        String city = parts[1].trim();
-        List<SecurityLog> logs = repository.findByUserId(userId);
-        return logs.stream().noneMatch(log -> {
-            Map<String, Object> md = log.getMetadata();
-            return md != null
-                    && country.equals(md.get("country"))
-                    && city.equals(md.get("city"));
-        });
+    public void discardBehavior(Collection<SecurityLog> notPersisted) {
+        for (SecurityLog log : notPersisted) {
+            if (log.getUserId() == null) continue;
+            profileCache.invalidate(log.getUserId());
+            counters.invalidate(log.getUserId());
+        }
     }
 
     @Override
-    public boolean isNewDevice(Long userId, String currentDeviceInfo) {
-        if (currentDeviceInfo == null) return false;
-        List<SecurityLog> logs = repository.findByUserId(userId);
-        return logs.stream().noneMatch(log ->
-                currentDeviceInfo.equals(log.getDeviceInfo())
-        );
+    public void onPersisted(SecurityLog saved) {
+        if (Boolean.TRUE.equals(saved.getIsSuspicious())) {
+            appendSuspicious(saved);
+        }
+        publish(saved);
     }
 
-    @Override
-    public boolean hasTooManyFailedAttempts(Long userId) {
-        int BLOCK_LIMIT = 3;
-        List<SecurityLog> lastAttempts = repository.findTop3ByUserIdAndEventTypeOrderByCreatedAtDesc(userId, "LOGIN_ATTEMPT");
-        if (lastAttempts.size() < BLOCK_LIMIT) return false;
-        return lastAttempts.stream().allMatch(log -> Boolean.TRUE.equals(log.getIsSuspicious()));
+    private void publish(SecurityLog saved) {
+        hotWindow.record(saved);
+
+        if (Boolean.TRUE.equals(saved.getIsSuspicious())) {
+            cefEventWriter.publish(saved);
+            siemExporter.exportInCEF(saved);
+        }
     }
 
-    @Override
-    public boolean hasTooManyPasswordChanges(Long userId) {
-        LocalDateTime dayAgo = LocalDateTime.now().minusDays(1);
-        List<SecurityLog> logs =
-                repository.findByUserIdAndEventTypeAndCreatedAtAfter(userId, "PASSWORD_CHANGE", dayAgo);
-        return logs.size() > 2;
+    // Без активной транзакции (вызов без Spring, JMH) действие выполняется сразу
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                // Событие уже зафиксировано: сбой обновления кэшей не должен превращаться в ошибку запроса
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    logger.error("Post-commit processing failed", e);
+                }
+            }
+        });
     }
 
-    @Override
-    public boolean isLoginWithoutBiometryWhereWasBiometryBefore(Long userId, SecurityLog log) {
-        if (!"LOGIN".equals(log.getEventType()) || Boolean.TRUE.equals(log.getBiometryUsed()))
-            return false;
-        List<SecurityLog> logs = repository.findByUserIdAndBiometryUsed(userId, true);
-        return !logs.isEmpty();
+    // Событие уже записано: сбой проекции не должен ронять запрос или поток писателя
+    private void appendSuspicious(SecurityLog saved) {
+        try {
+            suspiciousEvents.append(saved, saved.getFiredRules());
+        } catch (RuntimeException e) {
+            projectionFailures.increment();
+            logger.warn("Suspicious event {} not added to suspicious_events, POST /api/logs/suspicious/rebuild will restore it",
+                    saved.getId(), e);
+        }
     }
 
     @Override
     public boolean isBlacklistedCountry(String geoLocation) {
         if (geoLocation == null) return false;
-        String country = geoLocation.split(",")[0].trim();
-        return BLACKLISTED_COUNTRIES.contains(country.toUpperCase());
+        return StandardRules.isBlacklistedCountry(geoLocation.split(",")[0]);
     }
 
     @Override
-    public boolean isUserAgentMismatch(Long userId, String currentDeviceInfo) {
-        List<SecurityLog> logs = repository.findByUserId(userId);
-        Set<String> agents = new HashSet<>();
-        for (SecurityLog log : logs) {
-            String di = log.getDeviceInfo();
-            if (di != null) agents.add(di);
+    public SecurityLogPage findSuspiciousLogs(Integer cursor, int limit, boolean rescore) {
+        int afterId = cursor != null ? cursor : 0;
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        if (rescore) {
+            return rescoreSuspicious(afterId, pageSize);
         }
-        return agents.size() > 1 && !agents.contains(currentDeviceInfo);
+        List<SecurityLog> page = repository.findByIsSuspiciousTrueAndIdGreaterThanOrderByIdAsc(
+                afterId, PageRequest.of(0, pageSize));
+        Integer next = page.size() == pageSize ? page.get(page.size() - 1).getId() : null;
+        return new SecurityLogPage(page, next);
     }
 
-    @Override
-    public List<SecurityLog> findSuspiciousLogs() {
-        List<SecurityLog> allLogs = repository.findAll();
-        List<SecurityLog> result = new ArrayList<>();
-        for (SecurityLog log : allLogs) {
-            if (isSuspicious(log)) {
+    // Переоценка за один вызов просматривает не больше rescoreMaxScan id,
+    // в памяти одновременно только текущий кусок диапазона
+    private SecurityLogPage rescoreSuspicious(int afterId, int pageSize) {
+        Integer maxId = repository.findMaxId();
+        List<SecurityLog> result = new ArrayList<>(pageSize);
+        if (maxId == null || afterId >= maxId) {
+            return new SecurityLogPage(result, null);
+        }
+        int chunk = rescoreLeafSize * rescorePool.getParallelism();
+        long scanLimit = (long) afterId + rescoreMaxScan;
+        int from = afterId + 1;
+        while (from <= maxId && from <= scanLimit) {
+            int to = (int) Math.min((long) from + chunk - 1, Math.min(maxId, scanLimit));
+            for (SecurityLog log : rescorePool.invoke(new RescoreTask(from, to))) {
                 result.add(log);
+                if (result.size() == pageSize) {
+                    return new SecurityLogPage(result, log.getId());
+                }
+            }
+            from = to + 1;
+        }
+        // Страница не набралась: либо история кончилась, либо исчерпан лимит просмотра
+        return new SecurityLogPage(result, from <= maxId ? from - 1 : null);
+    }
+
+    private class RescoreTask extends RecursiveTask<List<SecurityLog>> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final int fromId;
+        private final int toId;
+
+        RescoreTask(int fromId, int toId) {
+            this.fromId = fromId;
+            this.toId = toId;
+        }
+
+        @Override
+        protected List<SecurityLog> compute() {
+            if (toId - fromId < rescoreLeafSize) {
+                List<SecurityLog> fired = new ArrayList<>();
+                for (SecurityLog log : repository.findByIdBetweenOrderByIdAsc(fromId, toId)) {
+                    if (isSuspicious(log)) {
+                        fired.add(log);
+                    }
+                }
+                return fired;
             }
+            int mid = fromId + (toId - fromId) / 2;
+            RescoreTask left = new RescoreTask(fromId, mid);
+            RescoreTask right = new RescoreTask(mid + 1, toId);
+            right.fork();
+            List<SecurityLog> result = left.compute();
+            result.addAll(right.join());
+            return result;
         }
-        return result;
     }
 
     @Override
@@ -242,15 +352,17 @@ public class SecurityLogServiceImpl implements SecurityLogService {
     }
 
     @Override
-    public List<SecurityLog> findSuspiciousLogsByUserId(Long userId) {
-        List<SecurityLog> userLogs = repository.findByUserId(userId);
-        List<SecurityLog> suspicious = new ArrayList<>();
-        for (SecurityLog log : userLogs) {
-            if (isSuspicious(log)) {
-                suspicious.add(log);
-            }
-        }
-        return suspicious;
+    public SuspiciousEventPage findSuspiciousEventsByUserId(Long userId, Integer cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<SuspiciousEvent> page = suspiciousEvents.findByUser(userId, cursor != null ? cursor : 0, pageSize);
+        Integer next = page.size() == pageSize ? page.get(page.size() - 1).logId() : null;
+        return new SuspiciousEventPage(page, next);
+    }
+
+    @Override
+    @Transactional
+    public SuspiciousEventRepository.RebuildResult rebuildSuspiciousEvents() {
+        return suspiciousEvents.rebuild();
     }
 
     @Override
@@ -259,53 +371,7 @@ public class SecurityLogServiceImpl implements SecurityLogService {
     }
 
     // --- Вспомогательная логика --------------------------------------------------------------------------------------
-    private boolean isSuspicious(SecurityLog log) {
-        if ("LOGIN_ATTEMPT".equals(log.getEventType())) {
-            return Boolean.TRUE.equals(log.getIsSuspicious());
-        }
-
-        Long userId = log.getUserId();
-        if (userId == null) return false;
-
-        if ("LOGIN".equals(log.getEventType()) && !Boolean.TRUE.equals(log.getBiometryUsed())) {
-            return true;
-        }
-
-        Map<String, Object> md = log.getMetadata();
-        String country = md != null && md.get("country") != null ? md.get("country").toString() : "";
-        String city = md != null && md.get("city") != null ? md.get("city").toString() : "";
-        String geoString = country + "," + city;
-
-        String deviceInfo = log.getDeviceInfo();
-        boolean suspiciousDevice = isNewDevice(userId, deviceInfo);
-
-        String platform = md != null && md.get("platform") != null ? md.get("platform").toString() : "";
-        String browser  = md != null && md.get("browser")  != null ? md.get("browser").toString()  : "";
-
-        boolean suspiciousPlatformBrowser = false;
-        if (!platform.isEmpty() || !browser.isEmpty()) {
-            List<SecurityLog> logs = repository.findByUserId(userId);
-            suspiciousPlatformBrowser = logs.stream().noneMatch(oldLog -> {
-                Map<String, Object> oldMd = oldLog.getMetadata();
-                if (oldMd == null) return false;
-                String oldPlatform = oldMd.get("platform") != null ? oldMd.get("platform").toString() : "";
-                String oldBrowser  = oldMd.get("browser")  != null ? oldMd.get("browser").toString() : "";
-                return platform.equals(oldPlatform) && browser.equals(oldBrowser);
-            });
-        }
-
-        // -- Сигналы подозрительности --
-        if (isNewIp(userId, log.getIpAddress())) return true;
-        if (isNewGeo(userId, geoString)) return true;
-        if (suspiciousDevice) return true;
-        if (suspiciousPlatformBrowser) return true;
-        if (hasTooManyFailedAttempts(userId)) return true;
-        if (hasTooManyPasswordChanges(userId)) return true;
-        if (isLoginWithoutBiometryWhereWasBiometryBefore(userId, log)) return true;
-        if (isBlacklistedCountry(geoString)) return true;
-        if (isUserAgentMismatch(userId, deviceInfo)) return true;
-
-        // Если ничего не сработало — лог не подозрительный
-        return false;
+    boolean isSuspicious(SecurityLog log) {
+        return detectionEngine.isSuspicious(log);
     }
 }
@@ -0,0 +1,131 @@
+package com.globus.modul26.service;
+
+import com.globus.modul26.model.SecurityLog;
+import com.globus.modul26.repository.UserSketchRepository.UserSketchRow;
+import com.globus.modul26.util.BloomFilter;
+import com.globus.modul26.util.HyperLogLog;
+
+
+/**
+ * Компактный профиль (security.profile-cache.mode=sketch): IP, устройства, гео
+ * и пары платформа/браузер - в фильтрах Блума, число устройств - в HyperLogLog.
+ * Память на пользователя фиксирована и не зависит от длины истории.
+ *
+ * Память против точности (expected-items = n, fpp = p, на один фильтр):
+ *   n=256,  p=0.01  -> 312 байт,  k=7;  при 2n значений ложные "уже видели" ~15%
+ *   n=256,  p=0.001 -> 464 байт,  k=10; при 2n ~5.5%
+ *   n=1024, p=0.01  -> 1232 байт, k=7
+ * Профиль = 4 фильтра + HLL (2^hll-precision байт): при n=256, p=0.01,
+ * precision=8 около 1.5 КБ. Точный профиль с 200 IP и 50 User-Agent
+ * занимает десятки КБ и растёт с историей.
+ * Ошибка фильтра односторонняя: новое значение может быть принято за
+ * знакомое (пропуск сигнала), знакомое за новое - никогда. HLL на малых
+ * количествах практически точен, поэтому проверка "больше одного
+ * устройства" в правиле USER_AGENT_MISMATCH не страдает.
+ */
+public class SketchBehaviorProfile extends UserBehaviorProfile {
+
+    public record Sizing(int expectedItems, double fpp, int hllPrecision) {}
+
+    private final BloomFilter ips;
+    private final BloomFilter devices;
+    private final BloomFilter geos;
+    private final BloomFilter platformBrowsers;
+    private final HyperLogLog deviceCounter;
+    private boolean biometryUsed;
+    private Integer coveredId;
+
+    private SketchBehaviorProfile(BloomFilter ips, BloomFilter devices, BloomFilter geos,
+                                  BloomFilter platformBrowsers, HyperLogLog deviceCounter,
+                                  boolean biometryUsed, Integer coveredId) {
+        this.ips = ips;
+        this.devices = devices;
+        this.geos = geos;
+        this.platformBrowsers = platformBrowsers;
+        this.deviceCounter = deviceCounter;
+        this.biometryUsed = biometryUsed;
+        this.coveredId = coveredId;
+    }
+
+    public static SketchBehaviorProfile empty(Sizing sizing) {
+        return new SketchBehaviorProfile(
+                BloomFilter.forCapacity(sizing.expectedItems(), sizing.fpp()),
+                BloomFilter.forCapacity(sizing.expectedItems(), sizing.fpp()),
+                BloomFilter.forCapacity(sizing.expectedItems(), sizing.fpp()),
+                BloomFilter.forCapacity(sizing.expectedItems(), sizing.fpp()),
+                new HyperLogLog(sizing.hllPrecision()),
+                false, null);
+    }
+
+    public static SketchBehaviorProfile fromRow(UserSketchRow row) {
+        return new SketchBehaviorProfile(
+                BloomFilter.fromBytes(row.ipBloom()),
+                BloomFilter.fromBytes(row.deviceBloom()),
+                BloomFilter.fromBytes(row.geoBloom()),
+                BloomFilter.fromBytes(row.platformBrowserBloom()),
+                HyperLogLog.fromBytes(row.deviceHll()),
+                row.biometryUsed(),
+                row.coveredId());
+    }
+
+    public synchronized UserSketchRow toRow(Long userId) {
+        return new UserSketchRow(userId, ips.toBytes(), devices.toBytes(), geos.toBytes(),
+                platformBrowsers.toBytes(), deviceCounter.toBytes(), biometryUsed, coveredId);
+    }
+
+    // Наибольший учтённый id. Не гарантирует, что учтены все меньшие: id выдаются
+    // раньше фиксации, поэтому загрузка дочитывает с запасом (replay-id-margin).
+    // События без id (ещё не записанные) водяной знак не двигают и дочитаются повторно
+    public synchronized Integer coveredId() {
+        return coveredId;
+    }
+
+    @Override
+    public synchronized void record(SecurityLog log) {
+        if (log.getIpAddress() != null) {
+            ips.put(log.getIpAddress());
+        }
+        if (log.getDeviceInfo() != null) {
+            devices.put(log.getDeviceInfo());
+            deviceCounter.add(log.getDeviceInfo());
+        }
+        geos.put(geoKey(value(log.getCountry()), value(log.getCity())));
+        platformBrowsers.put(platformBrowserKey(value(log.getPlatform()), value(log.getBrowser())));
+        if (Boolean.TRUE.equals(log.getBiometryUsed())) {
+            biometryUsed = true;
+        }
+        if (log.getId() != null && (coveredId == null || log.getId() > coveredId)) {
+            coveredId = log.getId();
+        }
+    }
+
+    @Override
+    public synchronized boolean knowsIp(String ip) {
+        return ips.mightContain(ip);
+    }
+
+    @Override
+    public synchronized boolean knowsGeo(String country, String city) {
+        return geos.mightContain(geoKey(country, city));
+    }
+
+    @Override
+    public synchronized boolean knowsDevice(String deviceInfo) {
+        return deviceInfo != null && devices.mightContain(deviceInfo);
+    }
+
+    @Override
+    public synchronized int deviceCount() {
+        return (int) Math.min(Integer.MAX_VALUE, deviceCounter.estimate());
+    }
+
+    @Override
+    public synchronized boolean knowsPlatformBrowser(String platform, String browser) {
+        return platformBrowsers.mightContain(platformBrowserKey(platform, browser));
+    }
+
+    @Override
+    public synchronized boolean hasUsedBiometry() {
+        return biometryUsed;
+    }
+}
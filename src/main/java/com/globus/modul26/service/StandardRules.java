@@ -0,0 +1,55 @@
+package com.globus.modul26.service;
+
+import com.globus.modul26.service.DetectionMetrics.Rule;
+import com.globus.modul26.service.DetectionRule.DataNeed;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+// Встроенные правила детектора; единственное место, где описаны их условия и пороги
+final class StandardRules {
+
+    static final Set<String> BLACKLISTED_COUNTRIES = Set.of("USA", "UKR", "POL");
+    static final int FAILED_LOGIN_LIMIT = 3;
+    static final int PASSWORD_CHANGE_LIMIT = 2;
+
+    private record PredicateRule(Rule id, long estimatedCostNanos, Set<DataNeed> needs,
+                                 Predicate<DetectionContext> test) implements DetectionRule {
+        @Override
+        public boolean fires(DetectionContext ctx) {
+            return test.test(ctx);
+        }
+    }
+
+    private StandardRules() {
+    }
+
+    static List<DetectionRule> all() {
+        return List.of(
+                new PredicateRule(Rule.LOGIN_WITHOUT_BIOMETRY, 20, Set.of(DataNeed.EVENT),
+                        ctx -> ctx.isLogin() && !ctx.usedBiometry()),
+                new PredicateRule(Rule.BLACKLISTED_COUNTRY, 50, Set.of(DataNeed.EVENT),
+                        ctx -> isBlacklistedCountry(ctx.country())),
+                new PredicateRule(Rule.NEW_IP, 100, Set.of(DataNeed.PROFILE),
+                        ctx -> ctx.event().getIpAddress() != null && !ctx.ipSeen()),
+                new PredicateRule(Rule.NEW_GEO, 150, Set.of(DataNeed.PROFILE),
+                        ctx -> !ctx.geoSeen()),
+                new PredicateRule(Rule.NEW_DEVICE, 150, Set.of(DataNeed.PROFILE),
+                        ctx -> ctx.event().getDeviceInfo() != null && !ctx.deviceSeen()),
+                new PredicateRule(Rule.NEW_PLATFORM_BROWSER, 150, Set.of(DataNeed.PROFILE),
+                        ctx -> ctx.hasPlatformOrBrowser() && !ctx.platformBrowserSeen()),
+                new PredicateRule(Rule.BIOMETRY_DOWNGRADE, 50, Set.of(DataNeed.EVENT, DataNeed.PROFILE),
+                        ctx -> ctx.isLogin() && !ctx.usedBiometry() && ctx.biometryUsedBefore()),
+                new PredicateRule(Rule.USER_AGENT_MISMATCH, 200, Set.of(DataNeed.PROFILE),
+                        ctx -> ctx.multipleDevices() && !ctx.deviceSeen()),
+                new PredicateRule(Rule.FAILED_LOGINS, 300, Set.of(DataNeed.COUNTERS),
+                        ctx -> ctx.recentFailures() >= FAILED_LOGIN_LIMIT),
+                new PredicateRule(Rule.PASSWORD_CHANGES, 300, Set.of(DataNeed.COUNTERS),
+                        ctx -> ctx.recentPasswordChanges() > PASSWORD_CHANGE_LIMIT));
+    }
+
+    static boolean isBlacklistedCountry(String country) {
+        return country != null && BLACKLISTED_COUNTRIES.contains(country.trim().toUpperCase());
+    }
+}
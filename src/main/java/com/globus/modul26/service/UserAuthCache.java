@@ -0,0 +1,96 @@
+package com.globus.modul26.service;
+
+import com.globus.modul26.model.Role;
+import com.globus.modul26.model.User;
+import com.globus.modul26.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кэш того, что нужно для входа (id, хэш пароля, роль, email, блокировка),
+ * чтобы /api/auth/login не читал users на каждой попытке. Размер ограничен
+ * (LRU), запись живёт не дольше ttl-seconds - так подхватываются изменения,
+ * сделанные другими экземплярами. Блокировку всё равно окончательно
+ * проверяет UPDATE в UserLockoutRepository. Неизвестные логины не кэшируются.
+ */
+@Component
+public class UserAuthCache {
+
+    public record AuthState(Long id, String passwordHash, Role role, String email,
+                            boolean locked, LocalDateTime lockedUntil) {
+
+        public boolean isLocked(LocalDateTime now) {
+            return locked || (lockedUntil != null && lockedUntil.isAfter(now));
+        }
+
+        AuthState withLockedUntil(LocalDateTime until) {
+            return new AuthState(id, passwordHash, role, email, locked, until);
+        }
+    }
+
+    private record Entry(AuthState state, long loadedAt) {}
+
+    private final UserRepository userRepository;
+    private final long ttlNanos;
+    private final Map<String, Entry> entries;
+
+    public UserAuthCache(UserRepository userRepository,
+                         @Value("${security.auth-cache.max-entries:10000}") int maxEntries,
+                         @Value("${security.auth-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public Optional<AuthState> get(String username) {
+        if (username == null) return Optional.empty();
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry entry = entries.get(username);
+            if (entry != null && now - entry.loadedAt() < ttlNanos) {
+                return Optional.of(entry.state());
+            }
+        }
+        // Чтение из БД вне блокировки кэша
+        Optional<AuthState> loaded = userRepository.findByUsername(username).map(UserAuthCache::toState);
+        loaded.ifPresent(state -> put(username, state, now));
+        return loaded;
+    }
+
+    public void updateLockedUntil(String username, LocalDateTime lockedUntil) {
+        synchronized (entries) {
+            Entry entry = entries.get(username);
+            if (entry != null) {
+                entries.put(username, new Entry(entry.state().withLockedUntil(lockedUntil), entry.loadedAt()));
+            }
+        }
+    }
+
+    public void invalidate(String username) {
+        synchronized (entries) {
+            entries.remove(username);
+        }
+    }
+
+    private void put(String username, AuthState state, long loadedAt) {
+        synchronized (entries) {
+            entries.put(username, new Entry(state, loadedAt));
+        }
+    }
+
+    private static AuthState toState(User user) {
+        return new AuthState(user.getId(), user.getPassword(), user.getRole(), user.getEmail(),
+                Boolean.TRUE.equals(user.getLocked()), user.getAccountLockedUntil());
+    }
+}
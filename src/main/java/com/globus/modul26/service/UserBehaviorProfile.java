@@ -0,0 +1,41 @@
+package com.globus.modul26.service;
+
+import com.globus.modul26.model.SecurityLog;
+
+
+/**
+ * Поведенческий профиль пользователя: всё, что детектор раньше вычитывал
+ * из полной истории через findByUserId. Строится один раз и дальше
+ * обновляется на каждом сохранённом событии.
+ * Оконные счётчики (неудачные входы, смены пароля) - в EventWindowCounters.
+ * Реализации: ExactBehaviorProfile (точные множества) и
+ * SketchBehaviorProfile (фильтры Блума и HyperLogLog фиксированного размера).
+ */
+public abstract class UserBehaviorProfile {
+
+    public abstract void record(SecurityLog log);
+
+    public abstract boolean knowsIp(String ip);
+
+    public abstract boolean knowsGeo(String country, String city);
+
+    public abstract boolean knowsDevice(String deviceInfo);
+
+    public abstract int deviceCount();
+
+    public abstract boolean knowsPlatformBrowser(String platform, String browser);
+
+    public abstract boolean hasUsedBiometry();
+
+    protected static String value(String v) {
+        return v != null ? v : "";
+    }
+
+    protected static String geoKey(String country, String city) {
+        return country + "," + city;
+    }
+
+    protected static String platformBrowserKey(String platform, String browser) {
+        return platform + "|" + browser;
+    }
+}
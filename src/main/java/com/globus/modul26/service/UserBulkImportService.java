@@ -0,0 +1,339 @@
+package com.globus.modul26.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.globus.modul26.dto.RegisterRequest;
+import com.globus.modul26.dto.UserImportResponse;
+import com.globus.modul26.dto.UserImportResponse.RowStatus;
+import com.globus.modul26.model.Role;
+import com.globus.modul26.model.User;
+import com.globus.modul26.repository.UserBatchRepository;
+import com.globus.modul26.util.BoundedLineReader;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Импорт пользователей из CSV (первая строка - заголовок с именами полей
+ * RegisterRequest) или NDJSON (один RegisterRequest на строку). Тело читается
+ * потоково; строки копятся в пачки по chunk-size. Пароли пачки хэшируются
+ * параллельно в bulk-пуле PasswordHashingPool (отдельно от регистрации),
+ * пока предыдущая пачка пишется в БД одним INSERT, так что CPU и запись
+ * перекрываются. Прогресс (строки и строки/с) пишется в лог после каждой
+ * пачки и в метрику users.import.rows.
+ * CSV разбирается построчно: поля в кавычках допускаются, переводы строк в них - нет.
+ */
+@Service
+public class UserBulkImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserBulkImportService.class);
+
+    public enum Format { CSV, NDJSON }
+
+    private record Row(int line, RegisterRequest request, Role role) {}
+
+    // Пачка, пароли которой сейчас хэшируются
+    private record Pending(List<Row> rows, CompletableFuture<List<String>> hashes) {}
+
+    private final PasswordHashingPool hashingPool;
+    private final UserBatchRepository batchRepository;
+    private final MeterRegistry meterRegistry;
+    private final ObjectReader reader;
+    private final int chunkSize;
+    private final int maxRecords;
+    private final int maxLineChars;
+
+    public UserBulkImportService(PasswordHashingPool hashingPool,
+                                 UserBatchRepository batchRepository,
+                                 MeterRegistry meterRegistry,
+                                 ObjectMapper objectMapper,
+                                 @Value("${security.user-import.chunk-size:1000}") int chunkSize,
+                                 @Value("${security.user-import.max-records:1000000}") int maxRecords,
+                                 @Value("${security.user-import.max-line-chars:4096}") int maxLineChars) {
+        this.hashingPool = hashingPool;
+        this.batchRepository = batchRepository;
+        this.meterRegistry = meterRegistry;
+        this.reader = objectMapper.readerFor(RegisterRequest.class);
+        // 8 параметров на строку, лимит протокола Postgres - 65535
+        this.chunkSize = Math.min(Math.max(1, chunkSize), 5000);
+        this.maxRecords = maxRecords;
+        this.maxLineChars = maxLineChars;
+    }
+
+    public UserImportResponse importUsers(InputStream body, Format format, boolean gzip) throws IOException {
+        InputStream in = gzip ? new GZIPInputStream(body, 64 * 1024) : body;
+        BoundedLineReader lines = new BoundedLineReader(in, maxLineChars);
+        Progress progress = new Progress();
+
+        Map<String, Integer> columns = null;
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        Pending hashing = null;
+        int lineNo = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNo++;
+            if (line != BoundedLineReader.TOO_LONG && line.isBlank()) continue;
+            if (format == Format.CSV && columns == null) {
+                if (line == BoundedLineReader.TOO_LONG) {
+                    throw new IllegalArgumentException("CSV header exceeds " + maxLineChars + " chars");
+                }
+                columns = header(line);
+                continue;
+            }
+            if (progress.received == maxRecords) {
+                progress.reject(lineNo, null, "skipped", "record limit " + maxRecords + " reached, rest of body ignored");
+                break;
+            }
+            progress.received++;
+            if (line == BoundedLineReader.TOO_LONG) {
+                progress.reject(lineNo, null, "invalid", "line exceeds " + maxLineChars + " chars");
+                continue;
+            }
+
+            RegisterRequest request;
+            try {
+                request = format == Format.CSV ? fromCsv(line, columns) : reader.readValue(line);
+            } catch (JsonProcessingException e) {
+                progress.reject(lineNo, null, "invalid", e.getOriginalMessage());
+                continue;
+            } catch (IllegalArgumentException e) {
+                progress.reject(lineNo, null, "invalid", e.getMessage());
+                continue;
+            }
+            String error = validate(request);
+            if (error != null) {
+                progress.reject(lineNo, request != null ? request.getUsername() : null, "invalid", error);
+                continue;
+            }
+            chunk.add(new Row(lineNo, request, Role.valueOf(request.getRole())));
+
+            if (chunk.size() == chunkSize) {
+                Pending next = startHashing(chunk);
+                persist(hashing, progress);
+                hashing = next;
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        Pending last = startHashing(chunk);
+        persist(hashing, progress);
+        persist(last, progress);
+
+        return progress.response();
+    }
+
+    private Pending startHashing(List<Row> rows) {
+        if (rows.isEmpty()) return null;
+        List<String> passwords = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            passwords.add(row.request().getPassword());
+        }
+        return new Pending(rows, hashingPool.encodeAll(passwords));
+    }
+
+    private void persist(Pending pending, Progress progress) {
+        if (pending == null) return;
+        List<String> hashes;
+        try {
+            hashes = pending.hashes().join();
+        } catch (CompletionException e) {
+            log.error("Password hashing failed for import chunk of {} users", pending.rows().size(), e.getCause());
+            pending.rows().forEach(row -> progress.reject(row.line(), row.request().getUsername(), "failed", "hashing failed"));
+            return;
+        }
+
+        // Повторы внутри пачки отсекаются здесь: RETURNING username их не различит
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        List<Row> rows = new ArrayList<>(pending.rows().size());
+        List<User> users = new ArrayList<>(pending.rows().size());
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < pending.rows().size(); i++) {
+            Row row = pending.rows().get(i);
+            RegisterRequest req = row.request();
+            if (!usernames.add(req.getUsername()) || !emails.add(req.getEmail())) {
+                progress.reject(row.line(), req.getUsername(), "duplicate", "username или email повторяется в файле");
+                continue;
+            }
+            rows.add(row);
+            users.add(toUser(req, row.role(), hashes.get(i), now));
+        }
+
+        Set<String> inserted;
+        try {
+            inserted = batchRepository.insertAll(users);
+        } catch (RuntimeException e) {
+            log.error("Failed to write import chunk of {} users", users.size(), e);
+            rows.forEach(row -> progress.reject(row.line(), row.request().getUsername(), "failed", "persistence failed"));
+            return;
+        }
+        for (Row row : rows) {
+            if (inserted.contains(row.request().getUsername())) {
+                progress.imported();
+            } else {
+                progress.reject(row.line(), row.request().getUsername(), "duplicate", "Username или email уже используется");
+            }
+        }
+        log.info("User import: {} rows processed, {} imported, {} rows/s",
+                progress.received, progress.imported, Math.round(progress.rowsPerSecond()));
+    }
+
+    // Те же проверки и сообщения, что у /api/auth/register
+    private static String validate(RegisterRequest req) {
+        if (req == null
+                || isBlank(req.getUsername()) || isBlank(req.getPassword()) || isBlank(req.getEmail())
+                || isBlank(req.getFirstName()) || isBlank(req.getLastName()) || isBlank(req.getRole())) {
+            return "Заполните все обязательные поля";
+        }
+        try {
+            Role.valueOf(req.getRole());
+        } catch (IllegalArgumentException e) {
+            return "Некорректная роль: " + req.getRole();
+        }
+        return null;
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.isBlank();
+    }
+
+    private static User toUser(RegisterRequest req, Role role, String passwordHash, LocalDateTime createdAt) {
+        User user = new User();
+        user.setUsername(req.getUsername());
+        user.setEmail(req.getEmail());
+        user.setPassword(passwordHash);
+        user.setFirstName(req.getFirstName());
+        user.setLastName(req.getLastName());
+        user.setPhone(req.getPhone());
+        user.setRole(role);
+        user.setCreatedAt(createdAt);
+        return user;
+    }
+
+    // Имя колонки без регистра и подчёркиваний (first_name = firstName) -> позиция
+    private static Map<String, Integer> header(String line) {
+        List<String> names = splitCsv(line);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(normalize(names.get(i)), i);
+        }
+        for (String required : List.of("username", "email", "password", "firstname", "lastname", "role")) {
+            if (!columns.containsKey(required)) {
+                throw new IllegalArgumentException("CSV header has no column " + required);
+            }
+        }
+        return columns;
+    }
+
+    private static String normalize(String name) {
+        return name.trim().replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static RegisterRequest fromCsv(String line, Map<String, Integer> columns) {
+        List<String> values = splitCsv(line);
+        RegisterRequest req = new RegisterRequest();
+        req.setUsername(column(values, columns, "username"));
+        req.setEmail(column(values, columns, "email"));
+        req.setPassword(column(values, columns, "password"));
+        req.setFirstName(column(values, columns, "firstname"));
+        req.setLastName(column(values, columns, "lastname"));
+        req.setPhone(column(values, columns, "phone"));
+        req.setRole(column(values, columns, "role"));
+        return req;
+    }
+
+    private static String column(List<String> values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= values.size()) return null;
+        String value = values.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // Одна строка CSV (RFC 4180 без многострочных полей): "a,""b"",c" -> [a, "b", c]
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    // Счётчики запроса и отклонённые строки
+    private class Progress {
+        final long startNanos = System.nanoTime();
+        final List<RowStatus> rejected = new ArrayList<>();
+        int received;
+        int imported;
+        int duplicates;
+        int failed;
+
+        void imported() {
+            imported++;
+            meterRegistry.counter("users.import.rows", "status", "imported").increment();
+        }
+
+        void reject(int line, String username, String status, String error) {
+            rejected.add(new RowStatus(line, username, status, error));
+            meterRegistry.counter("users.import.rows", "status", status).increment();
+            if ("duplicate".equals(status)) {
+                duplicates++;
+            } else if (!"skipped".equals(status)) {
+                failed++;
+            }
+        }
+
+        double rowsPerSecond() {
+            long nanos = Math.max(1, System.nanoTime() - startNanos);
+            return received * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+        }
+
+        UserImportResponse response() {
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            rejected.sort((a, b) -> Integer.compare(a.line(), b.line()));
+            return new UserImportResponse(received, imported, duplicates, failed, elapsedMs,
+                    Math.round(rowsPerSecond() * 10) / 10.0, rejected);
+        }
+    }
+}
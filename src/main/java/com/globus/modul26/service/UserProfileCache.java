@@ -0,0 +1,232 @@
+package com.globus.modul26.service;
+
+import com.globus.modul26.model.SecurityLog;
+import com.globus.modul26.repository.SecurityLogRepository;
+import com.globus.modul26.repository.UserSketchRepository;
+import com.globus.modul26.repository.UserSketchRepository.UserSketchRow;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Кэш поведенческих профилей. Профиль строится лениво одним запросом
+ * истории, дальше обновляется из saveLog после фиксации. Пока профиль
+ * загружается, на его месте стоит заглушка: record() буферизуется в ней и
+ * применяется к загруженному профилю (повторный учёт события безвреден),
+ * остальные обращения ждут ту же загрузку. Размер ограничен: при переполнении
+ * вытесняется профиль, к которому дольше всего не обращались (LRU).
+ * max-users=0 выключает кэш: детектор тогда берёт сигналы запросом к БД.
+ * mode=sketch: профили фиксированного размера (SketchBehaviorProfile),
+ * загружаются одной строкой user_sketches и дочитывают только события после
+ * covered_id; изменённые профили сбрасываются в БД раз в flush-interval-ms.
+ * id выдаются в порядке nextval, а фиксируются в другом порядке (пакетный
+ * приём берёт id заранее и коммитит позже), поэтому дочитывание начинается
+ * с covered_id - replay-id-margin: событие с меньшим id, зафиксированное
+ * после сброса профиля, попадает в окно. Транзакция, державшая id дольше,
+ * чем успели выдать replay-id-margin следующих, останется неучтённой.
+ */
+@Component
+public class UserProfileCache {
+
+    private static final Logger log = LoggerFactory.getLogger(UserProfileCache.class);
+
+    private final SecurityLogRepository repository;
+    private final UserSketchRepository sketchRepository;
+    private final Map<Long, UserBehaviorProfile> profiles;
+    private final int maxUsers;
+    private final boolean sketchMode;
+    private final SketchBehaviorProfile.Sizing sizing;
+    private final int replayIdMargin;
+    private final Map<Long, SketchBehaviorProfile> dirtySketches = new ConcurrentHashMap<>();
+    // Загружаемые профили; как и profiles, под блокировкой profiles
+    private final Map<Long, Loading> loading = new HashMap<>();
+
+    public UserProfileCache(SecurityLogRepository repository,
+                            UserSketchRepository sketchRepository,
+                            @Value("${security.profile-cache.max-users:10000}") int maxUsers,
+                            @Value("${security.profile-cache.mode:exact}") String mode,
+                            @Value("${security.profile-cache.sketch.expected-items:256}") int expectedItems,
+                            @Value("${security.profile-cache.sketch.fpp:0.01}") double fpp,
+                            @Value("${security.profile-cache.sketch.hll-precision:8}") int hllPrecision,
+                            @Value("${security.profile-cache.sketch.replay-id-margin:20000}") int replayIdMargin) {
+        this.repository = repository;
+        this.sketchRepository = sketchRepository;
+        this.maxUsers = maxUsers;
+        this.sketchMode = "sketch".equalsIgnoreCase(mode.trim());
+        this.sizing = new SketchBehaviorProfile.Sizing(expectedItems, fpp, hllPrecision);
+        this.replayIdMargin = Math.max(0, replayIdMargin);
+        this.profiles = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, UserBehaviorProfile> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxUsers > 0;
+    }
+
+    public UserBehaviorProfile get(Long userId) {
+        Loading slot;
+        boolean loader = false;
+        synchronized (profiles) {
+            UserBehaviorProfile profile = profiles.get(userId);
+            if (profile != null) {
+                return profile;
+            }
+            slot = loading.get(userId);
+            if (slot == null) {
+                slot = new Loading();
+                loading.put(userId, slot);
+                loader = true;
+            }
+        }
+        if (loader) {
+            return load(userId, slot);
+        }
+        try {
+            return slot.profile.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    // История читается вне блокировки, чтобы не держать весь кэш на время запроса
+    private UserBehaviorProfile load(Long userId, Loading slot) {
+        UserBehaviorProfile loaded;
+        try {
+            loaded = sketchMode
+                    ? loadSketch(userId)
+                    : ExactBehaviorProfile.fromHistory(repository.findByUserId(userId));
+        } catch (RuntimeException e) {
+            synchronized (profiles) {
+                loading.remove(userId, slot);
+            }
+            slot.profile.completeExceptionally(e);
+            throw e;
+        }
+        boolean replayed;
+        synchronized (profiles) {
+            // Записанные во время загрузки могли не попасть в прочитанную историю
+            slot.recorded.forEach(loaded::record);
+            replayed = !slot.recorded.isEmpty();
+            // После invalidate заглушки нет: профиль отдаётся вызвавшему, но не кэшируется
+            if (loading.remove(userId, slot)) {
+                profiles.put(userId, loaded);
+            }
+        }
+        if (replayed && loaded instanceof SketchBehaviorProfile sketch) {
+            dirtySketches.put(userId, sketch);
+        }
+        slot.profile.complete(loaded);
+        return loaded;
+    }
+
+    public UserBehaviorProfile getIfPresent(Long userId) {
+        synchronized (profiles) {
+            return profiles.get(userId);
+        }
+    }
+
+    // Событие уже зафиксировано. Профиль, которого нет в кэше, не создаём: при
+    // следующем обращении он соберётся из БД вместе с этим событием
+    public void record(SecurityLog saved) {
+        if (saved.getUserId() == null) return;
+        UserBehaviorProfile profile;
+        synchronized (profiles) {
+            profile = profiles.get(saved.getUserId());
+            if (profile == null) {
+                Loading slot = loading.get(saved.getUserId());
+                if (slot != null) slot.recorded.add(saved);
+                return;
+            }
+        }
+        profile.record(saved);
+        if (profile instanceof SketchBehaviorProfile sketch) {
+            dirtySketches.put(saved.getUserId(), sketch);
+        }
+    }
+
+    // Событие ещё не в БД (пакетный и асинхронный приём): профиль загружается из истории
+    // без него, затем событие добавляется - иначе оно потерялось бы до записи
+    public void recordPending(SecurityLog event) {
+        if (event.getUserId() == null || !isEnabled()) return;
+        UserBehaviorProfile profile = get(event.getUserId());
+        profile.record(event);
+        if (profile instanceof SketchBehaviorProfile sketch) {
+            dirtySketches.put(event.getUserId(), sketch);
+        }
+    }
+
+    // Несохранённые изменения профиля тоже отбрасываются: всё записанное дочитается из БД
+    public void invalidate(Long userId) {
+        synchronized (profiles) {
+            profiles.remove(userId);
+            loading.remove(userId);
+        }
+        dirtySketches.remove(userId);
+    }
+
+    @Scheduled(fixedDelayString = "${security.profile-cache.sketch.flush-interval-ms:10000}")
+    public void flushSketches() {
+        if (dirtySketches.isEmpty()) return;
+        List<Long> userIds = new ArrayList<>(dirtySketches.keySet());
+        List<UserSketchRow> rows = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            SketchBehaviorProfile sketch = dirtySketches.remove(userId);
+            if (sketch != null) rows.add(sketch.toRow(userId));
+        }
+        try {
+            sketchRepository.upsertAll(rows);
+        } catch (RuntimeException e) {
+            // Не записанное дочитается из security_logs после covered_id при следующей загрузке
+            log.warn("Failed to persist {} user sketches", rows.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushSketches();
+    }
+
+    private SketchBehaviorProfile loadSketch(Long userId) {
+        Optional<UserSketchRow> row = sketchRepository.find(userId);
+        SketchBehaviorProfile sketch;
+        List<SecurityLog> missing;
+        if (row.isPresent()) {
+            sketch = SketchBehaviorProfile.fromRow(row.get());
+            // Повторный учёт событий из окна фильтрам безвреден
+            missing = sketch.coveredId() != null
+                    ? repository.findByUserIdAndIdGreaterThan(userId, Math.max(0, sketch.coveredId() - replayIdMargin))
+                    : repository.findByUserId(userId);
+        } else {
+            sketch = SketchBehaviorProfile.empty(sizing);
+            missing = repository.findByUserId(userId);
+        }
+        missing.forEach(sketch::record);
+        if (row.isEmpty() || !missing.isEmpty()) {
+            dirtySketches.put(userId, sketch);
+        }
+        return sketch;
+    }
+
+    private static final class Loading {
+        private final CompletableFuture<UserBehaviorProfile> profile = new CompletableFuture<>();
+        // Под блокировкой profiles
+        private final List<SecurityLog> recorded = new ArrayList<>();
+    }
+}
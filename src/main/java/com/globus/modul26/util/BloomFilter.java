@@ -0,0 +1,99 @@
+package com.globus.modul26.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Фильтр Блума для строк: "точно не встречалось" / "вероятно встречалось".
+ * Размер считается из ожидаемого числа значений n и доли ложных
+ * срабатываний p: m = -n*ln(p)/ln(2)^2 бит, k = m/n*ln(2) хэшей.
+ * Индексы - двойное хэширование (Kirsch-Mitzenmacher) от одного 64-битного хэша.
+ * Хэш детерминирован между запусками: фильтр хранится в БД (toBytes/fromBytes).
+ * Не потокобезопасен.
+ */
+public final class BloomFilter {
+
+    private static final byte FORMAT = 1;
+
+    private final long[] bits;
+    private final long numBits;
+    private final int numHashes;
+
+    private BloomFilter(long[] bits, int numHashes) {
+        this.bits = bits;
+        this.numBits = (long) bits.length * Long.SIZE;
+        this.numHashes = numHashes;
+    }
+
+    public static BloomFilter forCapacity(int expectedItems, double fpp) {
+        int n = Math.max(1, expectedItems);
+        double p = Math.min(0.5, Math.max(1e-9, fpp));
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        int k = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+        int words = (int) Math.max(1, (m + Long.SIZE - 1) / Long.SIZE);
+        return new BloomFilter(new long[words], k);
+    }
+
+    public void put(String value) {
+        long h1 = hash64(value);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, numBits);
+            bits[(int) (index >>> 6)] |= 1L << index;
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long h1 = hash64(value);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, numBits);
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int sizeInBytes() {
+        return bits.length * Long.BYTES;
+    }
+
+    // [формат][k][слова битовой карты big-endian]
+    public byte[] toBytes() {
+        ByteBuffer buf = ByteBuffer.allocate(2 + bits.length * Long.BYTES);
+        buf.put(FORMAT).put((byte) numHashes);
+        for (long word : bits) buf.putLong(word);
+        return buf.array();
+    }
+
+    public static BloomFilter fromBytes(byte[] data) {
+        if (data == null || data.length < 2 + Long.BYTES || data[0] != FORMAT
+                || (data.length - 2) % Long.BYTES != 0) {
+            throw new IllegalArgumentException("Unsupported bloom filter format");
+        }
+        ByteBuffer buf = ByteBuffer.wrap(data, 2, data.length - 2);
+        long[] bits = new long[(data.length - 2) / Long.BYTES];
+        for (int i = 0; i < bits.length; i++) bits[i] = buf.getLong();
+        return new BloomFilter(bits, data[1]);
+    }
+
+    // FNV-1a по символам строки с перемешиванием в конце (без кодирования в байты)
+    static long hash64(String value) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    // Финализатор murmur3 (fmix64)
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
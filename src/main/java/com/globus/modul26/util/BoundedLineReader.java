@@ -0,0 +1,47 @@
+package com.globus.modul26.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Построчное чтение тела запроса с ограничением длины строки: в отличие от
+ * BufferedReader.readLine слишком длинная строка не набирается в память,
+ * её остаток дочитывается и отбрасывается.
+ */
+public final class BoundedLineReader {
+
+    // Признак строки длиннее лимита (сравнивается по ссылке)
+    public static final String TOO_LONG = new String("too long");
+
+    private final BufferedReader in;
+    private final int maxLineChars;
+
+    public BoundedLineReader(InputStream body, int maxLineChars) {
+        this.in = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), 64 * 1024);
+        this.maxLineChars = maxLineChars;
+    }
+
+    // Строка без перевода строки, TOO_LONG для слишком длинной, null в конце потока
+    public String readLine() throws IOException {
+        StringBuilder sb = new StringBuilder(256);
+        boolean overflow = false;
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') break;
+            if (overflow) continue;
+            if (sb.length() == maxLineChars) {
+                overflow = true;
+                continue;
+            }
+            sb.append((char) c);
+        }
+        if (c == -1 && sb.isEmpty() && !overflow) return null;
+        if (overflow) return TOO_LONG;
+        int len = sb.length();
+        if (len > 0 && sb.charAt(len - 1) == '\r') sb.setLength(len - 1);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,229 @@
+package com.globus.modul26.util;
+
+import com.globus.modul26.model.SecurityLog;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Кодирование SecurityLog в строку CEF (ArcSight CEF rev. 25) сразу в UTF-8
+ * байты переиспользуемого буфера: без промежуточных карт, StringBuilder и
+ * String. Порядок полей расширения фиксирован.
+ * Экранирование по спецификации: в заголовке \ и |, в расширении \ и =,
+ * переводы строк в расширении - \n / \r, в заголовке - пробел; прочие
+ * управляющие символы заменяются пробелом. Поддельный User-Agent не может
+ * разорвать строку или подменить поле.
+ * Экземпляр не потокобезопасен: один на поток-писатель (или ThreadLocal).
+ */
+public final class CefEncoder {
+
+    private static final byte[] PREFIX = ascii("CEF:0|Globus|modul26|1.0|1001|");
+    private static final int SEVERITY_SUSPICIOUS = 8;
+    private static final int SEVERITY_NORMAL = 3;
+
+    private static final byte[] EVENT_ID = ascii("eventId=");
+    private static final byte[] USER_ID = ascii(" userId=");
+    private static final byte[] EVENT_TYPE = ascii(" eventType=");
+    private static final byte[] IP = ascii(" ip=");
+    private static final byte[] DEVICE_INFO = ascii(" device_info=");
+    private static final byte[] BIOMETRY = ascii(" biometry=");
+    private static final byte[] IS_SUSPICIOUS = ascii(" isSuspicious=");
+    private static final byte[] COUNTRY = ascii(" country=");
+    private static final byte[] CITY = ascii(" city=");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] NULL = ascii("null");
+
+    private byte[] buf = new byte[1024];
+    private int len;
+
+    // Закодировать событие; результат доступен до следующего вызова encode
+    public CefEncoder encode(SecurityLog event) {
+        len = 0;
+        boolean suspicious = Boolean.TRUE.equals(event.getIsSuspicious());
+
+        put(PREFIX);
+        header(event.getEventType());
+        putByte('|');
+        putLong(suspicious ? SEVERITY_SUSPICIOUS : SEVERITY_NORMAL);
+        putByte('|');
+
+        int start = len;
+        if (event.getId() != null) {
+            put(EVENT_ID);
+            putLong(event.getId());
+        }
+        field(USER_ID, start);
+        if (event.getUserId() != null) putLong(event.getUserId()); else put(NULL);
+        field(EVENT_TYPE, start);
+        extension(event.getEventType());
+        field(IP, start);
+        extension(event.getIpAddress());
+        if (event.getDeviceInfo() != null) {
+            field(DEVICE_INFO, start);
+            extension(event.getDeviceInfo());
+        }
+        if (event.getBiometryUsed() != null) {
+            field(BIOMETRY, start);
+            put(event.getBiometryUsed() ? TRUE : FALSE);
+        }
+        field(IS_SUSPICIOUS, start);
+        put(suspicious ? TRUE : FALSE);
+
+        field(COUNTRY, start);
+        nullable(event.getCountry());
+        field(CITY, start);
+        nullable(event.getCity());
+        return this;
+    }
+
+    public int length() {
+        return len;
+    }
+
+    public void writeTo(ByteBuffer out) {
+        out.put(buf, 0, len);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, len);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buf, 0, len, StandardCharsets.UTF_8);
+    }
+
+    // Ключ расширения; первое поле без ведущего пробела
+    private void field(byte[] key, int extensionStart) {
+        if (len == extensionStart) {
+            put(key, 1, key.length - 1);
+        } else {
+            put(key, 0, key.length);
+        }
+    }
+
+    private void nullable(String value) {
+        if (value == null) {
+            put(NULL);
+        } else {
+            extension(value);
+        }
+    }
+
+    private void header(CharSequence s) {
+        if (s == null) {
+            put(NULL);
+            return;
+        }
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\' -> putEscaped('\\');
+                case '|' -> putEscaped('|');
+                default -> {
+                    if (c < 0x20 || c == 0x7F) putByte(' ');
+                    else i = putChar(s, i, c);
+                }
+            }
+        }
+    }
+
+    private void extension(CharSequence s) {
+        if (s == null) {
+            put(NULL);
+            return;
+        }
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\' -> putEscaped('\\');
+                case '=' -> putEscaped('=');
+                case '\n' -> putEscaped('n');
+                case '\r' -> putEscaped('r');
+                default -> {
+                    if (c < 0x20 || c == 0x7F) putByte(' ');
+                    else i = putChar(s, i, c);
+                }
+            }
+        }
+    }
+
+    private void putEscaped(char c) {
+        ensure(2);
+        buf[len++] = '\\';
+        buf[len++] = (byte) c;
+    }
+
+    // UTF-8 без CharsetEncoder; возвращает индекс последнего прочитанного char
+    private int putChar(CharSequence s, int i, char c) {
+        ensure(4);
+        if (c < 0x80) {
+            buf[len++] = (byte) c;
+        } else if (c < 0x800) {
+            buf[len++] = (byte) (0xC0 | (c >> 6));
+            buf[len++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(i + 1));
+            buf[len++] = (byte) (0xF0 | (cp >> 18));
+            buf[len++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            buf[len++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            buf[len++] = (byte) (0x80 | (cp & 0x3F));
+            return i + 1;
+        } else if (Character.isSurrogate(c)) {
+            buf[len++] = '?';
+        } else {
+            buf[len++] = (byte) (0xE0 | (c >> 12));
+            buf[len++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buf[len++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return i;
+    }
+
+    private void putLong(long v) {
+        ensure(20);
+        if (v < 0) {
+            buf[len++] = '-';
+            if (v == Long.MIN_VALUE) {
+                put(ascii("9223372036854775808"));
+                return;
+            }
+            v = -v;
+        }
+        int digits = 1;
+        for (long t = v; t >= 10; t /= 10) digits++;
+        for (int p = len + digits - 1; p >= len; p--) {
+            buf[p] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        len += digits;
+    }
+
+    private void putByte(char c) {
+        ensure(1);
+        buf[len++] = (byte) c;
+    }
+
+    private void put(byte[] bytes) {
+        put(bytes, 0, bytes.length);
+    }
+
+    private void put(byte[] bytes, int off, int n) {
+        ensure(n);
+        System.arraycopy(bytes, off, buf, len, n);
+        len += n;
+    }
+
+    private void ensure(int extra) {
+        if (len + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+        }
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
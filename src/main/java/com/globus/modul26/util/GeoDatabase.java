@@ -0,0 +1,281 @@
+package com.globus.modul26.util;
+
+import com.globus.modul26.dto.GeoLocation;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Локальная база GeoIP: отсортированные диапазоны IPv4/IPv6 в файле,
+ * отображённом в память (mmap), поиск бинарный.
+ *
+ * Формат файла (big-endian):
+ * <pre>
+ *   int    magic "GEO1"
+ *   int    locationCount, v4Count, v6Count
+ *   locationCount x { byte[3] iso3, u16 len, utf8 countryName, u16 len, utf8 city }
+ *   v4Count       x { int start, int end, int location }                      (12 байт)
+ *   v6Count       x { long startHi, long startLo, long endHi, long endLo, int location } (36 байт)
+ * </pre>
+ * Диапазоны не пересекаются и отсортированы по началу (беззнаково).
+ * Локации читаются в массив один раз, поэтому lookup не создаёт объектов
+ * (кроме разбора IPv6, где используется буфер потока).
+ */
+public final class GeoDatabase {
+
+    public static final int MAGIC = 0x47454F31;
+
+    static final int V4_ENTRY = 12;
+    static final int V6_ENTRY = 36;
+
+    private static final ThreadLocal<long[]> IPV6_SCRATCH = ThreadLocal.withInitial(() -> new long[2]);
+
+    private final MappedByteBuffer buffer;
+    private final GeoLocation[] locations;
+    private final int v4Offset;
+    private final int v4Count;
+    private final int v6Offset;
+    private final int v6Count;
+
+    private GeoDatabase(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Не файл базы GeoIP: неверная сигнатура");
+        }
+        int locationCount = buffer.getInt(4);
+        this.v4Count = buffer.getInt(8);
+        this.v6Count = buffer.getInt(12);
+
+        this.locations = new GeoLocation[locationCount];
+        int pos = 16;
+        byte[] iso = new byte[3];
+        for (int i = 0; i < locationCount; i++) {
+            buffer.get(pos, iso);
+            pos += 3;
+            int nameLen = Short.toUnsignedInt(buffer.getShort(pos));
+            String name = readUtf8(pos + 2, nameLen);
+            pos += 2 + nameLen;
+            int cityLen = Short.toUnsignedInt(buffer.getShort(pos));
+            String city = readUtf8(pos + 2, cityLen);
+            pos += 2 + cityLen;
+            locations[i] = new GeoLocation(new String(iso, StandardCharsets.US_ASCII), name, city);
+        }
+        this.v4Offset = pos;
+        this.v6Offset = v4Offset + v4Count * V4_ENTRY;
+        if ((long) v6Offset + (long) v6Count * V6_ENTRY > buffer.capacity()) {
+            throw new IllegalArgumentException("Файл базы GeoIP обрезан");
+        }
+    }
+
+    public static GeoDatabase open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Отображение остаётся валидным и после закрытия канала
+            return new GeoDatabase(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int size() {
+        return v4Count + v6Count;
+    }
+
+    public GeoLocation lookup(String ip) {
+        if (ip == null) return GeoLocation.UNKNOWN;
+        int from = 0;
+        int to = ip.length();
+        while (from < to && ip.charAt(from) <= ' ') from++;
+        while (to > from && ip.charAt(to - 1) <= ' ') to--;
+        if (from == to) return GeoLocation.UNKNOWN;
+
+        if (ip.indexOf(':', from) < 0) {
+            long v4 = parseIpv4(ip, from, to);
+            return v4 < 0 ? GeoLocation.UNKNOWN : lookupV4((int) v4);
+        }
+
+        long[] scratch = IPV6_SCRATCH.get();
+        if (!parseIpv6(ip, from, to, scratch)) return GeoLocation.UNKNOWN;
+        long hi = scratch[0];
+        long lo = scratch[1];
+        // IPv4-mapped (::ffff:a.b.c.d) ищем в таблице IPv4
+        if (hi == 0 && (lo >>> 32) == 0xFFFFL) {
+            return lookupV4((int) lo);
+        }
+        return lookupV6(hi, lo);
+    }
+
+    private GeoLocation lookupV4(int ip) {
+        int low = 0;
+        int high = v4Count - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int start = buffer.getInt(v4Offset + mid * V4_ENTRY);
+            if (Integer.compareUnsigned(start, ip) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (found < 0) return GeoLocation.UNKNOWN;
+        int entry = v4Offset + found * V4_ENTRY;
+        if (Integer.compareUnsigned(ip, buffer.getInt(entry + 4)) > 0) return GeoLocation.UNKNOWN;
+        return location(buffer.getInt(entry + 8));
+    }
+
+    private GeoLocation lookupV6(long hi, long lo) {
+        int low = 0;
+        int high = v6Count - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = v6Offset + mid * V6_ENTRY;
+            if (compare128(buffer.getLong(entry), buffer.getLong(entry + 8), hi, lo) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (found < 0) return GeoLocation.UNKNOWN;
+        int entry = v6Offset + found * V6_ENTRY;
+        if (compare128(hi, lo, buffer.getLong(entry + 16), buffer.getLong(entry + 24)) > 0) {
+            return GeoLocation.UNKNOWN;
+        }
+        return location(buffer.getInt(entry + 32));
+    }
+
+    private GeoLocation location(int index) {
+        return index >= 0 && index < locations.length ? locations[index] : GeoLocation.UNKNOWN;
+    }
+
+    private String readUtf8(int pos, int len) {
+        byte[] bytes = new byte[len];
+        buffer.get(pos, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static int compare128(long aHi, long aLo, long bHi, long bLo) {
+        int cmp = Long.compareUnsigned(aHi, bHi);
+        return cmp != 0 ? cmp : Long.compareUnsigned(aLo, bLo);
+    }
+
+    // Разбор a.b.c.d; -1 если строка не IPv4
+    static long parseIpv4(CharSequence s, int from, int to) {
+        long result = 0;
+        int octets = 0;
+        int value = -1;
+        for (int i = from; i <= to; i++) {
+            char c = i < to ? s.charAt(i) : '.';
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) return -1;
+            } else if (c == '.') {
+                if (value < 0 || octets == 4) return -1;
+                result = (result << 8) | value;
+                octets++;
+                value = -1;
+            } else {
+                return -1;
+            }
+        }
+        return octets == 4 ? result : -1;
+    }
+
+    // Разбор IPv6 (с '::', зоной '%' и хвостом IPv4) в out[0]=hi, out[1]=lo
+    static boolean parseIpv6(CharSequence s, int from, int to, long[] out) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == '%') {
+                to = i;
+                break;
+            }
+        }
+        long headHi = 0, headLo = 0, tailHi = 0, tailLo = 0;
+        int headGroups = 0, tailGroups = 0;
+        boolean compressed = false;
+
+        int i = from;
+        if (to - from >= 2 && s.charAt(from) == ':' && s.charAt(from + 1) == ':') {
+            compressed = true;
+            i = from + 2;
+        } else if (to > from && s.charAt(from) == ':') {
+            return false;
+        }
+        while (i < to) {
+            int groupEnd = i;
+            boolean dotted = false;
+            while (groupEnd < to && s.charAt(groupEnd) != ':') {
+                if (s.charAt(groupEnd) == '.') dotted = true;
+                groupEnd++;
+            }
+            int bits;
+            long value;
+            if (dotted) {
+                if (groupEnd != to) return false;
+                value = parseIpv4(s, i, groupEnd);
+                if (value < 0) return false;
+                bits = 32;
+            } else {
+                int len = groupEnd - i;
+                if (len == 0 || len > 4) return false;
+                value = 0;
+                for (int k = i; k < groupEnd; k++) {
+                    int digit = Character.digit(s.charAt(k), 16);
+                    if (digit < 0) return false;
+                    value = (value << 4) | digit;
+                }
+                bits = 16;
+            }
+            if (compressed) {
+                tailHi = (tailHi << bits) | (tailLo >>> (64 - bits));
+                tailLo = (tailLo << bits) | value;
+                tailGroups += bits / 16;
+            } else {
+                headHi = (headHi << bits) | (headLo >>> (64 - bits));
+                headLo = (headLo << bits) | value;
+                headGroups += bits / 16;
+            }
+            if (headGroups + tailGroups > 8) return false;
+
+            if (groupEnd == to) break;
+            // groupEnd указывает на ':'
+            if (groupEnd + 1 < to && s.charAt(groupEnd + 1) == ':') {
+                if (compressed) return false;
+                compressed = true;
+                i = groupEnd + 2;
+            } else {
+                i = groupEnd + 1;
+                if (i == to) return false;
+            }
+        }
+
+        if (!compressed) {
+            if (headGroups != 8) return false;
+            out[0] = headHi;
+            out[1] = headLo;
+            return true;
+        }
+        if (headGroups + tailGroups > 7) return false;
+        int shift = 16 * (8 - headGroups);
+        long hi;
+        long lo;
+        if (shift >= 128) {
+            hi = 0;
+            lo = 0;
+        } else if (shift >= 64) {
+            hi = headLo << (shift - 64);
+            lo = 0;
+        } else {
+            hi = (headHi << shift) | (headLo >>> (64 - shift));
+            lo = headLo << shift;
+        }
+        out[0] = hi | tailHi;
+        out[1] = lo | tailLo;
+        return true;
+    }
+}
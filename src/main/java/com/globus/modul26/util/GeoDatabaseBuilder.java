@@ -0,0 +1,124 @@
+package com.globus.modul26.util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сборка файла базы GeoIP (формат см. {@link GeoDatabase}) из CSV:
+ * <pre>start_ip,end_ip,country_iso3,country_name,city</pre>
+ * Запуск: java -cp app.jar com.globus.modul26.util.GeoDatabaseBuilder geo.csv data/geoip.bin
+ * Файл пишется во временный и переименовывается, поэтому его можно класть
+ * прямо на место рабочего - сервис подхватит новую версию.
+ */
+public final class GeoDatabaseBuilder {
+
+    private record V4Range(int start, int end, int location) {}
+
+    private record V6Range(long startHi, long startLo, long endHi, long endLo, int location) {}
+
+    private final List<String[]> locations = new ArrayList<>();
+    private final Map<String, Integer> locationIndex = new HashMap<>();
+    private final List<V4Range> v4 = new ArrayList<>();
+    private final List<V6Range> v6 = new ArrayList<>();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: GeoDatabaseBuilder <ranges.csv> <geoip.bin>");
+            System.exit(1);
+        }
+        GeoDatabaseBuilder builder = new GeoDatabaseBuilder();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) continue;
+                String[] p = line.split(",", -1);
+                if (p.length < 5) {
+                    throw new IllegalArgumentException("Ожидается 5 колонок: " + line);
+                }
+                builder.addRange(p[0].trim(), p[1].trim(), p[2].trim(), p[3].trim(), p[4].trim());
+            }
+        }
+        builder.write(Paths.get(args[1]));
+    }
+
+    public void addRange(String startIp, String endIp, String iso3, String countryName, String city) {
+        if (iso3.length() != 3) {
+            throw new IllegalArgumentException("Код страны должен быть ISO3: " + iso3);
+        }
+        int location = locationIndex.computeIfAbsent(iso3 + "|" + countryName + "|" + city, key -> {
+            locations.add(new String[]{iso3, countryName, city});
+            return locations.size() - 1;
+        });
+
+        long start4 = GeoDatabase.parseIpv4(startIp, 0, startIp.length());
+        long end4 = GeoDatabase.parseIpv4(endIp, 0, endIp.length());
+        if (start4 >= 0 && end4 >= 0) {
+            v4.add(new V4Range((int) start4, (int) end4, location));
+            return;
+        }
+        long[] start = new long[2];
+        long[] end = new long[2];
+        if (!GeoDatabase.parseIpv6(startIp, 0, startIp.length(), start)
+                || !GeoDatabase.parseIpv6(endIp, 0, endIp.length(), end)) {
+            throw new IllegalArgumentException("Некорректный диапазон: " + startIp + " - " + endIp);
+        }
+        v6.add(new V6Range(start[0], start[1], end[0], end[1], location));
+    }
+
+    public void write(Path target) throws IOException {
+        v4.sort((a, b) -> Integer.compareUnsigned(a.start(), b.start()));
+        v6.sort(Comparator.comparing(V6Range::startHi, Long::compareUnsigned)
+                .thenComparing(V6Range::startLo, Long::compareUnsigned));
+
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+        try (OutputStream os = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+            out.writeInt(GeoDatabase.MAGIC);
+            out.writeInt(locations.size());
+            out.writeInt(v4.size());
+            out.writeInt(v6.size());
+            for (String[] loc : locations) {
+                out.write(loc[0].getBytes(StandardCharsets.US_ASCII));
+                writeString(out, loc[1]);
+                writeString(out, loc[2]);
+            }
+            for (V4Range r : v4) {
+                out.writeInt(r.start());
+                out.writeInt(r.end());
+                out.writeInt(r.location());
+            }
+            for (V6Range r : v6) {
+                out.writeLong(r.startHi());
+                out.writeLong(r.startLo());
+                out.writeLong(r.endHi());
+                out.writeLong(r.endLo());
+                out.writeInt(r.location());
+            }
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Слишком длинное значение: " + value);
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,77 @@
+package com.globus.modul26.util;
+
+/**
+ * HyperLogLog: оценка числа различных строк в 2^precision байт.
+ * Стандартная ошибка ~1.04/sqrt(2^precision) (precision=8: 256 байт, ~6.5%);
+ * на малых количествах (что и нужно детектору: "больше одного устройства")
+ * работает линейный подсчёт, и оценка практически точная.
+ * Не потокобезопасен.
+ */
+public final class HyperLogLog {
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("HyperLogLog precision must be in [4, 16]");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    private HyperLogLog(int precision, byte[] registers) {
+        this.precision = precision;
+        this.registers = registers;
+    }
+
+    public void add(String value) {
+        long h = BloomFilter.hash64(value);
+        int index = (int) (h >>> (Long.SIZE - precision));
+        // Сторожевой бит ограничивает ранг, если остаток хэша нулевой
+        long rest = (h << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) zeros++;
+        }
+        double alpha = switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+        double raw = alpha * m * m / sum;
+        if (raw <= 2.5 * m && zeros > 0) {
+            return Math.round(m * Math.log((double) m / zeros));
+        }
+        return Math.round(raw);
+    }
+
+    // [precision][регистры]
+    public byte[] toBytes() {
+        byte[] data = new byte[1 + registers.length];
+        data[0] = (byte) precision;
+        System.arraycopy(registers, 0, data, 1, registers.length);
+        return data;
+    }
+
+    public static HyperLogLog fromBytes(byte[] data) {
+        if (data == null || data.length < 1 || data[0] < 4 || data[0] > 16
+                || data.length != 1 + (1 << data[0])) {
+            throw new IllegalArgumentException("Unsupported HyperLogLog format");
+        }
+        byte[] registers = new byte[data.length - 1];
+        System.arraycopy(data, 1, registers, 0, registers.length);
+        return new HyperLogLog(data[0], registers);
+    }
+}
@@ -1,5 +1,11 @@
 package com.globus.modul26.util;
-import jakarta.annotation.PostConstruct;
+
+import com.globus.modul26.integrations.CefEventWriter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.io.*;
@@ -7,78 +13,204 @@ import java.nio.file.*;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
-import java.util.zip.GZIPOutputStream;
 
+/**
+ * Фоновая ротация logs/cef.log. Проверка идёт по расписанию, сама работа -
+ * в отдельном потоке, поэтому ни старт приложения, ни планировщик не ждут.
+ * Файл уходит в backup при смене дня или превышении max-bytes (переименование
+ * делает CefEventWriter между пачками). Бэкапы прошлого месяца собираются в
+ * настоящий tar.gz с параллельным сжатием блоками; старые бэкапы и архивы
+ * удаляются по срокам хранения.
+ */
 @Component
 public class LogRotator {
 
-    private static final String LOG_FILE = "logs/cef.log";
+    private static final Logger log = LoggerFactory.getLogger(LogRotator.class);
+
     private static final String BACKUP_DIR = "log/cef/backup";
     private static final String ARCHIVE_DIR = "log/cef/archive";
 
-
     private static final DateTimeFormatter DAY_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     private static final DateTimeFormatter MONTH_FMT = DateTimeFormatter.ofPattern("yyyy-MM");
 
-    @PostConstruct
-    public void onStartup() throws IOException {
+    private final CefEventWriter cefWriter;
+    private final long maxBytes;
+    private final int backupRetentionDays;
+    private final int archiveRetentionMonths;
+    private final int blockSize;
+    private final int compressThreads;
+
+    private final ExecutorService rotationExecutor = Executors.newSingleThreadExecutor(daemon("cef-rotation"));
+    private final ExecutorService compressPool;
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    private volatile LocalDate currentDay;
+
+    public LogRotator(CefEventWriter cefWriter,
+                      @Value("${cef.rotation.max-bytes:104857600}") long maxBytes,
+                      @Value("${cef.rotation.backup-retention-days:45}") int backupRetentionDays,
+                      @Value("${cef.rotation.archive-retention-months:12}") int archiveRetentionMonths,
+                      @Value("${cef.rotation.block-bytes:4194304}") int blockSize,
+                      @Value("${cef.rotation.compress-threads:0}") int compressThreads) {
+        this.cefWriter = cefWriter;
+        this.maxBytes = maxBytes;
+        this.backupRetentionDays = backupRetentionDays;
+        this.archiveRetentionMonths = archiveRetentionMonths;
+        this.blockSize = blockSize;
+        // По умолчанию половина ядер, чтобы архивация не вытесняла обработку запросов
+        this.compressThreads = compressThreads > 0
+                ? compressThreads
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.compressPool = Executors.newFixedThreadPool(this.compressThreads, daemon("cef-compress"));
+    }
+
+    @Scheduled(fixedDelayString = "${cef.rotation.check-interval-ms:60000}",
+            initialDelayString = "${cef.rotation.initial-delay-ms:30000}")
+    public void scheduleCheck() {
+        if (busy.compareAndSet(false, true)) {
+            rotationExecutor.execute(() -> {
+                try {
+                    runOnce();
+                } catch (Exception e) {
+                    log.error("CEF log rotation failed", e);
+                } finally {
+                    busy.set(false);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rotationExecutor.shutdownNow();
+        compressPool.shutdownNow();
+    }
+
+    void runOnce() throws IOException {
         Files.createDirectories(Paths.get(BACKUP_DIR));
         Files.createDirectories(Paths.get(ARCHIVE_DIR));
 
-        LocalDate today = LocalDate.now();
-        String todayName = "cef-" + DAY_FMT.format(today) + ".log";
-        String monthName = "cef-" + MONTH_FMT.format(today) + ".tar.gz";
+        rotateIfNeeded();
+        archivePreviousMonth();
+        applyRetention();
+    }
 
+    private void rotateIfNeeded() throws IOException {
+        Path logFile = cefWriter.file();
+        LocalDate today = LocalDate.now();
+        if (!Files.exists(logFile)) {
+            currentDay = today;
+            return;
+        }
+        if (currentDay == null) {
+            // После рестарта файл мог остаться со вчерашнего дня
+            currentDay = LocalDate.ofInstant(Files.getLastModifiedTime(logFile).toInstant(), ZoneId.systemDefault());
+        }
+        long size = Files.size(logFile);
+        boolean dayChanged = !today.equals(currentDay);
+        if (size == 0 || (!dayChanged && size < maxBytes)) {
+            currentDay = today;
+            return;
+        }
 
-        boolean needDailyBackup = true;
-        try (Stream<Path> files = Files.list(Paths.get(BACKUP_DIR))) {
-            needDailyBackup = files
-                    .map(path -> path.getFileName().toString())
-                    .noneMatch(fname -> fname.equals(todayName));
+        Path target = nextBackupName(currentDay);
+        try {
+            cefWriter.rotate(target).get(30, TimeUnit.SECONDS);
+            log.info("CEF log rotated to {} ({} bytes)", target.getFileName(), size);
+            currentDay = today;
+        } catch (Exception e) {
+            log.warn("CEF log rotation to {} did not complete", target, e);
         }
+    }
 
-        if (needDailyBackup) {
-            Files.copy(Paths.get(LOG_FILE), Paths.get(BACKUP_DIR, todayName), StandardCopyOption.REPLACE_EXISTING);
-            System.out.println("Daily log backup created: " + todayName);
+    // cef-2025-06-01.log, при повторной ротации за день - cef-2025-06-01-1.log и т.д.
+    private Path nextBackupName(LocalDate day) {
+        String base = "cef-" + DAY_FMT.format(day);
+        Path candidate = Paths.get(BACKUP_DIR, base + ".log");
+        for (int i = 1; Files.exists(candidate); i++) {
+            candidate = Paths.get(BACKUP_DIR, base + "-" + i + ".log");
         }
+        return candidate;
+    }
 
+    private void archivePreviousMonth() throws IOException {
+        LocalDate prevMonth = LocalDate.now().withDayOfMonth(1).minusDays(1);
+        String prevMonthPrefix = "cef-" + MONTH_FMT.format(prevMonth);
+        Path archivePath = Paths.get(ARCHIVE_DIR, prevMonthPrefix + ".tar.gz");
+        if (Files.exists(archivePath)) return;
 
-        boolean needMonthlyArchive = true;
-        try (Stream<Path> files = Files.list(Paths.get(ARCHIVE_DIR))) {
-            needMonthlyArchive = files
-                    .map(path -> path.getFileName().toString())
-                    .noneMatch(fname -> fname.equals(monthName));
+        List<Path> filesToArchive;
+        try (Stream<Path> files = Files.list(Paths.get(BACKUP_DIR))) {
+            filesToArchive = files
+                    .filter(f -> f.getFileName().toString().startsWith(prevMonthPrefix))
+                    .sorted()
+                    .toList();
         }
+        if (filesToArchive.isEmpty()) return;
 
-        if (needMonthlyArchive) {
+        long start = System.nanoTime();
+        ParallelTarGz.archive(filesToArchive, archivePath, compressPool, blockSize, compressThreads * 2);
+        log.info("Monthly archive created: {} ({} files, {} ms)", archivePath.getFileName(),
+                filesToArchive.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
 
-            LocalDate firstDayOfMonth = today.withDayOfMonth(1);
-            LocalDate prevMonth = firstDayOfMonth.minusDays(1);
-            String prevMonthPrefix = "cef-" + MONTH_FMT.format(prevMonth);
+    private void applyRetention() throws IOException {
+        LocalDate today = LocalDate.now();
+        LocalDate backupBorder = today.minusDays(backupRetentionDays);
+        YearMonth archiveBorder = YearMonth.from(today).minusMonths(archiveRetentionMonths);
 
-            List<Path> filesToArchive = new ArrayList<>();
-            try (Stream<Path> files = Files.list(Paths.get(BACKUP_DIR))) {
-                filesToArchive = files
-                        .filter(f -> f.getFileName().toString().startsWith(prevMonthPrefix))
-                        .toList();
+        try (Stream<Path> files = Files.list(Paths.get(BACKUP_DIR))) {
+            for (Path file : files.toList()) {
+                LocalDate day = parseDay(file.getFileName().toString());
+                // Бэкап удаляется, только если его месяц уже лежит в архиве
+                if (day != null && day.isBefore(backupBorder)
+                        && Files.exists(Paths.get(ARCHIVE_DIR, "cef-" + MONTH_FMT.format(day) + ".tar.gz"))) {
+                    Files.deleteIfExists(file);
+                }
             }
-            if (!filesToArchive.isEmpty()) {
-                Path archivePath = Paths.get(ARCHIVE_DIR, "cef-" + MONTH_FMT.format(prevMonth) + ".tar.gz");
-                createTarGzArchive(filesToArchive, archivePath);
-                System.out.println("Monthly archive created: " + archivePath.getFileName());
-                // Можно удалить старые бэкапы, если надо
+        }
+        try (Stream<Path> files = Files.list(Paths.get(ARCHIVE_DIR))) {
+            for (Path file : files.toList()) {
+                YearMonth month = parseMonth(file.getFileName().toString());
+                if (month != null && month.isBefore(archiveBorder)) {
+                    Files.deleteIfExists(file);
+                    log.info("Expired CEF archive removed: {}", file.getFileName());
+                }
             }
         }
     }
 
-    private void createTarGzArchive(List<Path> files, Path archivePath) throws IOException {
+    private static LocalDate parseDay(String name) {
+        if (!name.startsWith("cef-") || name.length() < 14) return null;
+        try {
+            return LocalDate.parse(name.substring(4, 14), DAY_FMT);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
 
-        try (FileOutputStream fos = new FileOutputStream(archivePath.toFile());
-             GZIPOutputStream gos = new GZIPOutputStream(fos)) {
-            for (Path file : files) {
-                Files.copy(file, gos);
-            }
+    private static YearMonth parseMonth(String name) {
+        if (!name.startsWith("cef-") || !name.endsWith(".tar.gz") || name.length() < 11) return null;
+        try {
+            return YearMonth.parse(name.substring(4, 11), MONTH_FMT);
+        } catch (DateTimeException e) {
+            return null;
         }
     }
-}
\ No newline at end of file
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,180 @@
+package com.globus.modul26.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Потоковая сборка tar.gz (ustar) с параллельным сжатием.
+ * Tar-поток режется на блоки по blockSize байт, каждый блок сжимается
+ * отдельным gzip-членом в пуле; члены пишутся по порядку. Склейка
+ * gzip-членов - корректный gzip (RFC 1952), его читают gzip/tar.
+ * В памяти не больше maxInFlight блоков, файлы читаются буфером 64 КБ.
+ */
+public final class ParallelTarGz {
+
+    private static final int TAR_BLOCK = 512;
+    private static final int READ_BUFFER = 64 * 1024;
+
+    private final ExecutorService pool;
+    private final int blockSize;
+    private final int maxInFlight;
+
+    private final Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+    private byte[] block;
+    private int blockPos;
+    private OutputStream out;
+
+    private ParallelTarGz(ExecutorService pool, int blockSize, int maxInFlight) {
+        this.pool = pool;
+        this.blockSize = blockSize;
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    public static void archive(List<Path> files, Path target, ExecutorService pool,
+                               int blockSize, int maxInFlight) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (OutputStream os = Files.newOutputStream(tmp)) {
+            new ParallelTarGz(pool, blockSize, maxInFlight).write(files, os);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void write(List<Path> files, OutputStream os) throws IOException {
+        this.out = os;
+        this.block = new byte[blockSize];
+        byte[] readBuffer = new byte[READ_BUFFER];
+        try {
+            for (Path file : files) {
+                long size = Files.size(file);
+                put(header(file.getFileName().toString(), size,
+                        Files.getLastModifiedTime(file).toMillis() / 1000));
+                long copied = 0;
+                try (InputStream in = Files.newInputStream(file)) {
+                    int n;
+                    while (copied < size && (n = in.read(readBuffer, 0, (int) Math.min(readBuffer.length, size - copied))) > 0) {
+                        put(readBuffer, 0, n);
+                        copied += n;
+                    }
+                }
+                if (copied != size) {
+                    throw new IOException("File changed while archiving: " + file);
+                }
+                int pad = (int) ((TAR_BLOCK - size % TAR_BLOCK) % TAR_BLOCK);
+                put(new byte[pad]);
+            }
+            // Конец архива: два нулевых блока
+            put(new byte[TAR_BLOCK * 2]);
+            submitBlock();
+            while (!inFlight.isEmpty()) {
+                writeOldest();
+            }
+        } finally {
+            inFlight.forEach(f -> f.cancel(true));
+        }
+    }
+
+    private void put(byte[] data) throws IOException {
+        put(data, 0, data.length);
+    }
+
+    private void put(byte[] data, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, blockSize - blockPos);
+            System.arraycopy(data, off, block, blockPos, n);
+            blockPos += n;
+            off += n;
+            len -= n;
+            if (blockPos == blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        if (blockPos == 0) return;
+        byte[] chunk = block;
+        int chunkLen = blockPos;
+        inFlight.addLast(pool.submit(() -> gzip(chunk, chunkLen)));
+        block = new byte[blockSize];
+        blockPos = 0;
+        while (inFlight.size() >= maxInFlight) {
+            writeOldest();
+        }
+    }
+
+    private void writeOldest() throws IOException {
+        try {
+            out.write(inFlight.removeFirst().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Archiving interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Block compression failed", e.getCause());
+        }
+    }
+
+    private static byte[] gzip(byte[] data, int len) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(len / 4 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(bos, READ_BUFFER)) {
+            gz.write(data, 0, len);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bos.toByteArray();
+    }
+
+    static byte[] header(String name, long size, long mtimeSeconds) {
+        byte[] h = new byte[TAR_BLOCK];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > 100) {
+            throw new IllegalArgumentException("Name too long for tar: " + name);
+        }
+        System.arraycopy(nameBytes, 0, h, 0, nameBytes.length);
+        octal(h, 100, 8, 0644);
+        octal(h, 108, 8, 0);
+        octal(h, 116, 8, 0);
+        octal(h, 124, 12, size);
+        octal(h, 136, 12, mtimeSeconds);
+        h[156] = '0';
+        byte[] magic = "ustar\u000000".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(magic, 0, h, 257, magic.length);
+
+        // Контрольная сумма считается с полем chksum, заполненным пробелами
+        for (int i = 148; i < 156; i++) h[i] = ' ';
+        long sum = 0;
+        for (byte b : h) sum += b & 0xFF;
+        octal(h, 148, 7, sum);
+        h[155] = ' ';
+        return h;
+    }
+
+    // Восьмеричное число с ведущими нулями и завершающим NUL
+    private static void octal(byte[] h, int offset, int length, long value) {
+        int pos = offset + length - 1;
+        h[pos--] = 0;
+        while (pos >= offset) {
+            h[pos--] = (byte) ('0' + (value & 7));
+            value >>>= 3;
+        }
+        if (value != 0) {
+            throw new IllegalArgumentException("Value does not fit tar header field");
+        }
+    }
+}
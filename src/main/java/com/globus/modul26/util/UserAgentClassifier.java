@@ -0,0 +1,204 @@
+package com.globus.modul26.util;
+
+import com.globus.modul26.dto.UserAgentInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Классификатор User-Agent за один проход: все токены браузеров и платформ
+ * ищутся автоматом Ахо-Корасик (таблица переходов строится один раз),
+ * результат - битовая маска найденных токенов. Приоритеты те же, что были
+ * в SecurityLogController.parseBrowser/parsePlatform.
+ * Результаты интернированы по маске, а повторяющиеся строки UA кэшируются.
+ * Кэш - LRU на полосах (как в EventWindowCounters) с общим лимитом
+ * max-entries: строки UA задаёт клиент, поэтому при переполнении вытесняется
+ * давно не встречавшаяся, а не перестают кэшироваться новые.
+ */
+@Component
+public class UserAgentClassifier {
+
+    private static final String[] TOKENS = {
+            "OPR", "Opera", "Edg", "Edge", "Chrome", "Firefox", "Safari",
+            "Windows", "Mac OS", "Macintosh", "Linux", "Android", "iPhone", "iPad", "iOS",
+            "Mobile", "Tablet"
+    };
+
+    private static final int OPR = bit("OPR"), OPERA = bit("Opera"), EDG = bit("Edg"), EDGE = bit("Edge"),
+            CHROME = bit("Chrome"), FIREFOX = bit("Firefox"), SAFARI = bit("Safari"),
+            WINDOWS = bit("Windows"), MAC_OS = bit("Mac OS"), MACINTOSH = bit("Macintosh"),
+            LINUX = bit("Linux"), ANDROID = bit("Android"), IPHONE = bit("iPhone"), IPAD = bit("iPad"),
+            IOS = bit("iOS"), MOBILE = bit("Mobile"), TABLET = bit("Tablet");
+
+    private static final int ALPHABET = 128;
+    private static final int STRIPES = 16;
+
+    // DFA: delta[state * ALPHABET + c], output[state] - маска токенов, оканчивающихся в состоянии
+    private static final int[] DELTA;
+    private static final int[] OUTPUT;
+
+    static {
+        List<int[]> gotoTable = new ArrayList<>();
+        List<Integer> output = new ArrayList<>();
+        gotoTable.add(newRow());
+        output.add(0);
+        for (int t = 0; t < TOKENS.length; t++) {
+            int state = 0;
+            for (char c : TOKENS[t].toCharArray()) {
+                int next = gotoTable.get(state)[c];
+                if (next < 0) {
+                    next = gotoTable.size();
+                    gotoTable.add(newRow());
+                    output.add(0);
+                    gotoTable.get(state)[c] = next;
+                }
+                state = next;
+            }
+            output.set(state, output.get(state) | (1 << t));
+        }
+
+        int states = gotoTable.size();
+        int[] fail = new int[states];
+        DELTA = new int[states * ALPHABET];
+        OUTPUT = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = gotoTable.get(0)[c];
+            if (next > 0) {
+                fail[next] = 0;
+                queue.add(next);
+                DELTA[c] = next;
+            } else {
+                DELTA[c] = 0;
+            }
+        }
+        OUTPUT[0] = output.get(0);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            OUTPUT[state] = output.get(state) | OUTPUT[fail[state]];
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = gotoTable.get(state)[c];
+                if (next > 0) {
+                    fail[next] = DELTA[fail[state] * ALPHABET + c];
+                    queue.add(next);
+                    DELTA[state * ALPHABET + c] = next;
+                } else {
+                    DELTA[state * ALPHABET + c] = DELTA[fail[state] * ALPHABET + c];
+                }
+            }
+        }
+    }
+
+    private final Map<Integer, UserAgentInfo> byMask = new ConcurrentHashMap<>();
+    private final List<Map<String, UserAgentInfo>> stripes;
+    private final boolean cacheEnabled;
+
+    public UserAgentClassifier(@Value("${security.user-agent.cache-size:10000}") int maxEntries) {
+        this.cacheEnabled = maxEntries > 0;
+        int perStripe = Math.max(1, maxEntries / STRIPES);
+        this.stripes = new ArrayList<>(STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, UserAgentInfo> eldest) {
+                    return size() > perStripe;
+                }
+            });
+        }
+    }
+
+    public UserAgentInfo classify(String userAgent) {
+        if (userAgent == null) return UserAgentInfo.UNKNOWN;
+        if (!cacheEnabled) return parse(userAgent);
+        Map<String, UserAgentInfo> stripe = stripe(userAgent);
+        synchronized (stripe) {
+            UserAgentInfo info = stripe.get(userAgent);
+            if (info != null) return info;
+        }
+        // Разбор вне блокировки; гонка двух потоков на одной строке даёт тот же интернированный результат
+        UserAgentInfo info = parse(userAgent);
+        synchronized (stripe) {
+            stripe.put(userAgent, info);
+        }
+        return info;
+    }
+
+    private Map<String, UserAgentInfo> stripe(String userAgent) {
+        int h = userAgent.hashCode() * 0x9E3779B9;
+        return stripes.get((h ^ (h >>> 16)) & (STRIPES - 1));
+    }
+
+    // Разбор без кэша строк, результат всё равно интернирован
+    public UserAgentInfo parse(String userAgent) {
+        if (userAgent == null) return UserAgentInfo.UNKNOWN;
+        int mask = scan(userAgent);
+        UserAgentInfo info = byMask.get(mask);
+        if (info == null) {
+            info = byMask.computeIfAbsent(mask, UserAgentClassifier::resolve);
+        }
+        return info;
+    }
+
+    static int scan(CharSequence s) {
+        int state = 0;
+        int mask = 0;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            state = c < ALPHABET ? DELTA[state * ALPHABET + c] : 0;
+            mask |= OUTPUT[state];
+        }
+        return mask;
+    }
+
+    private static UserAgentInfo resolve(int mask) {
+        String browser;
+        if (has(mask, OPR | OPERA)) browser = "Opera";
+        else if (has(mask, EDG | EDGE)) browser = "Edge";
+        else if (has(mask, CHROME)) browser = "Chrome";
+        else if (has(mask, FIREFOX)) browser = "Firefox";
+        else if (has(mask, SAFARI)) browser = "Safari";
+        else browser = "Unknown";
+
+        String platform;
+        if (has(mask, WINDOWS)) platform = "Windows";
+        else if (has(mask, MAC_OS | MACINTOSH)) platform = "Mac";
+        else if (has(mask, LINUX)) platform = "Linux";
+        else if (has(mask, ANDROID)) platform = "Android";
+        else if (has(mask, IPHONE | IPAD | IOS)) platform = "iOS";
+        else platform = "Unknown";
+
+        String deviceClass;
+        if (has(mask, IPAD | TABLET)) deviceClass = "tablet";
+        else if (has(mask, MOBILE | IPHONE)) deviceClass = "mobile";
+        else if (has(mask, ANDROID)) deviceClass = "tablet";
+        else if (!"Unknown".equals(platform)) deviceClass = "desktop";
+        else deviceClass = "unknown";
+
+        if ("Unknown".equals(browser) && "Unknown".equals(platform) && "unknown".equals(deviceClass)) {
+            return UserAgentInfo.UNKNOWN;
+        }
+        return new UserAgentInfo(browser, platform, deviceClass);
+    }
+
+    private static boolean has(int mask, int bits) {
+        return (mask & bits) != 0;
+    }
+
+    private static int bit(String token) {
+        return 1 << Arrays.asList(TOKENS).indexOf(token);
+    }
+
+    private static int[] newRow() {
+        int[] row = new int[ALPHABET];
+        Arrays.fill(row, -1);
+        return row;
+    }
+}
@@ -0,0 +1,35 @@
+-- Исходная схема в том виде, в каком её создавал ddl-auto=update.
+-- IF NOT EXISTS: на существующей базе миграция ничего не меняет.
+
+CREATE TABLE IF NOT EXISTS users (
+    id_user               BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    username              VARCHAR(255) NOT NULL,
+    password              VARCHAR(255) NOT NULL,
+    email                 VARCHAR(255) NOT NULL,
+    first_name            VARCHAR(255) NOT NULL,
+    last_name             VARCHAR(255) NOT NULL,
+    phone                 VARCHAR(255),
+    role                  VARCHAR(255) NOT NULL,
+    locked                BOOLEAN      NOT NULL DEFAULT FALSE,
+    created_at            TIMESTAMP(6),
+    last_login            TIMESTAMP(6),
+    locked_until          TIMESTAMP(6),
+    failed_login_attempts INTEGER      NOT NULL DEFAULT 0,
+    CONSTRAINT users_pkey PRIMARY KEY (id_user),
+    CONSTRAINT uk_users_username UNIQUE (username),
+    CONSTRAINT uk_users_email UNIQUE (email),
+    CONSTRAINT ck_users_role CHECK (role IN ('USER', 'ADMIN'))
+);
+
+CREATE TABLE IF NOT EXISTS security_logs (
+    id_int        INTEGER GENERATED BY DEFAULT AS IDENTITY,
+    user_id       BIGINT       NOT NULL,
+    event_type    VARCHAR(45)  NOT NULL,
+    ip_address    VARCHAR(45)  NOT NULL,
+    device_info   VARCHAR(255),
+    created_at    TIMESTAMP(6) NOT NULL,
+    metadata      JSONB,
+    biometry_used BOOLEAN,
+    is_suspicious BOOLEAN      NOT NULL DEFAULT FALSE,
+    CONSTRAINT security_logs_pkey PRIMARY KEY (id_int)
+);
@@ -0,0 +1,111 @@
+-- security_logs становится таблицей, секционированной по created_at (RANGE).
+-- История раскладывается по месячным секциям, дальше секции заранее создаёт
+-- PartitionMaintenanceService (день или месяц - security.partitions.granularity),
+-- он же удаляет/отсоединяет секции старше срока хранения.
+-- Ключ секционирования обязан входить в первичный ключ: (id_int, created_at).
+--
+-- Скрипт выполняется вне транзакции Flyway (V3__partition_security_logs.sql.conf):
+-- строки переносятся пачками по id_int с COMMIT после каждой, без одной
+-- транзакции на всю историю. Индексы строятся один раз, после переноса.
+-- Простой: миграция идёт при старте приложения, до приёма запросов; другие
+-- экземпляры на время миграции должны быть остановлены - security_logs под
+-- этим именем появляется сразу, но история в ней - только после переноса.
+-- Переименование и DROP берут ACCESS EXCLUSIVE на мгновение; перенос читает
+-- security_logs_legacy без блокировки записи. Время - порядка копирования
+-- таблицы плюс построения индексов. Сбой посередине оставляет обе таблицы:
+-- перенос продолжается вручную с max(id_int) в security_logs, затем
+-- flyway repair.
+
+ALTER TABLE security_logs RENAME TO security_logs_legacy;
+ALTER TABLE security_logs_legacy RENAME CONSTRAINT security_logs_pkey TO security_logs_legacy_pkey;
+
+CREATE SEQUENCE security_logs_id_seq AS INTEGER;
+
+CREATE TABLE security_logs (
+    id_int        INTEGER      NOT NULL DEFAULT nextval('security_logs_id_seq'),
+    user_id       BIGINT       NOT NULL,
+    event_type    VARCHAR(45)  NOT NULL,
+    ip_address    VARCHAR(45)  NOT NULL,
+    device_info   VARCHAR(255),
+    created_at    TIMESTAMP(6) NOT NULL,
+    metadata      JSONB,
+    biometry_used BOOLEAN,
+    is_suspicious BOOLEAN      NOT NULL DEFAULT FALSE,
+    CONSTRAINT security_logs_pkey PRIMARY KEY (id_int, created_at)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE security_logs_id_seq OWNED BY security_logs.id_int;
+
+-- Сюда попадают только строки вне созданных секций (например, задним числом)
+CREATE TABLE security_logs_default PARTITION OF security_logs DEFAULT;
+
+DO $$
+DECLARE
+    month_start TIMESTAMP;
+    last_month  TIMESTAMP := date_trunc('month', now()) + INTERVAL '2 months';
+BEGIN
+    SELECT coalesce(date_trunc('month', min(created_at)), date_trunc('month', now()))
+    INTO month_start
+    FROM security_logs_legacy;
+
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF security_logs FOR VALUES FROM (%L) TO (%L)',
+                       'security_logs_p' || to_char(month_start, 'YYYYMMDD'),
+                       month_start, month_start + INTERVAL '1 month');
+        month_start := month_start + INTERVAL '1 month';
+    END LOOP;
+END $$;
+
+DO $$
+DECLARE
+    batch CONSTANT bigint := 50000;
+    lo    bigint;
+    hi    bigint;
+BEGIN
+    SELECT min(id_int), max(id_int) INTO lo, hi FROM security_logs_legacy;
+    WHILE lo <= hi LOOP
+        INSERT INTO security_logs (id_int, user_id, event_type, ip_address, device_info, created_at,
+                                   metadata, biometry_used, is_suspicious)
+        SELECT id_int, user_id, event_type, ip_address, device_info, created_at,
+               metadata, biometry_used, is_suspicious
+        FROM security_logs_legacy
+        WHERE id_int >= lo AND id_int < lo + batch;
+        COMMIT;
+        lo := lo + batch;
+    END LOOP;
+END $$;
+
+SELECT setval('security_logs_id_seq', coalesce(max(id_int), 0) + 1, false) FROM security_logs;
+
+DROP TABLE security_logs_legacy;
+
+-- Индексы детектора (SecurityLogRepository.findDetectionSignals) объявляются
+-- на родителе и создаются в каждой секции, в том числе будущих. Строятся
+-- после переноса: так быстрее, чем поддерживать их при вставке
+
+-- Окна по типу события: неудачные входы, смены пароля, последние попытки
+CREATE INDEX idx_security_logs_user_type_created
+    ON security_logs (user_id, event_type, created_at);
+
+-- География из jsonb: country/city сравниваются в SQL, а не в Java
+CREATE INDEX idx_security_logs_user_country_city
+    ON security_logs (user_id, (metadata ->> 'country'), (metadata ->> 'city'));
+
+CREATE INDEX idx_security_logs_user_ip
+    ON security_logs (user_id, ip_address);
+
+CREATE INDEX idx_security_logs_user_device
+    ON security_logs (user_id, device_info);
+
+CREATE INDEX idx_security_logs_user_biometry
+    ON security_logs (user_id)
+    WHERE biometry_used;
+
+-- Keyset-страницы /api/logs/suspicious
+CREATE INDEX idx_security_logs_suspicious_id
+    ON security_logs (id_int)
+    WHERE is_suspicious;
+
+-- Строки пишутся почти по возрастанию времени: BRIN на порядки меньше B-tree
+CREATE INDEX idx_security_logs_created_brin
+    ON security_logs USING brin (created_at);
@@ -0,0 +1,20 @@
+-- Компактные профили детектора (security.profile-cache.mode=sketch):
+-- фильтры Блума и HyperLogLog, одна строка на пользователя.
+-- covered_id - наибольший id_int учтённого события. Не created_at: его задаёт
+-- клиент (в том числе задним числом при пакетном приёме). id растёт в порядке
+-- nextval, но не в порядке фиксации: пакетный приём берёт id заранее и
+-- коммитит позже, поэтому загрузка дочитывает события с
+-- covered_id - security.profile-cache.sketch.replay-id-margin.
+
+CREATE TABLE IF NOT EXISTS user_sketches (
+    user_id                BIGINT       NOT NULL,
+    ip_bloom               BYTEA        NOT NULL,
+    device_bloom           BYTEA        NOT NULL,
+    geo_bloom              BYTEA        NOT NULL,
+    platform_browser_bloom BYTEA        NOT NULL,
+    device_hll             BYTEA        NOT NULL,
+    biometry_used          BOOLEAN      NOT NULL DEFAULT FALSE,
+    covered_id             INTEGER,
+    updated_at             TIMESTAMP(6) NOT NULL DEFAULT now(),
+    CONSTRAINT user_sketches_pkey PRIMARY KEY (user_id)
+);
@@ -0,0 +1,26 @@
+-- Проекция подозрительных событий для GET /api/logs/suspicious/{userId}:
+-- строка добавляется при записи события с is_suspicious = true
+-- (SecurityLogService.onPersisted), rule_ids - сработавшие правила детектора.
+-- Страница пользователя - один проход по idx_suspicious_events_user_log.
+-- Восстановление из истории: POST /api/logs/suspicious/rebuild.
+
+CREATE TABLE IF NOT EXISTS suspicious_events (
+    log_id     INTEGER      NOT NULL,
+    user_id    BIGINT       NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    event_type VARCHAR(45)  NOT NULL,
+    ip_address VARCHAR(45)  NOT NULL,
+    country    VARCHAR(64),
+    rule_ids   TEXT[]       NOT NULL DEFAULT '{}',
+    CONSTRAINT suspicious_events_pkey PRIMARY KEY (log_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_suspicious_events_user_log
+    ON suspicious_events (user_id, log_id);
+
+-- Начальное заполнение из уже записанной истории (правила для неё неизвестны)
+INSERT INTO suspicious_events (log_id, user_id, created_at, event_type, ip_address, country)
+SELECT id_int, user_id, created_at, event_type, ip_address, left(metadata ->> 'country', 64)
+FROM security_logs
+WHERE is_suspicious
+ON CONFLICT (log_id) DO NOTHING;
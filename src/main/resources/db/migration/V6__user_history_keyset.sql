@@ -0,0 +1,5 @@
+-- Keyset-страницы истории пользователя GET /api/logs/users/{userId}:
+-- (created_at, id_int) < курсор, от новых к старым - обратный проход индекса.
+-- На секционированной таблице CONCURRENTLY недоступен, индекс строится в каждой секции.
+CREATE INDEX IF NOT EXISTS idx_security_logs_user_created_id
+    ON security_logs (user_id, created_at, id_int);
@@ -0,0 +1,59 @@
+-- Горячие ключи metadata (country, city, platform, browser) выносятся в
+-- колонки security_logs с целочисленными id из словарей dict_*.
+-- В jsonb остаются только прочие ключи (country_name, device_class, ...),
+-- пустой объект заменяется на NULL. Словари маленькие и целиком живут в
+-- кэше приложения (MetadataDictionary); внешних ключей нет, чтобы не
+-- проверять их на каждой вставке в секционированную таблицу.
+
+CREATE TABLE dict_countries (
+    id    INTEGER GENERATED BY DEFAULT AS IDENTITY,
+    value VARCHAR(255) NOT NULL,
+    CONSTRAINT dict_countries_pkey PRIMARY KEY (id),
+    CONSTRAINT uk_dict_countries_value UNIQUE (value)
+);
+
+CREATE TABLE dict_cities (
+    id    INTEGER GENERATED BY DEFAULT AS IDENTITY,
+    value VARCHAR(255) NOT NULL,
+    CONSTRAINT dict_cities_pkey PRIMARY KEY (id),
+    CONSTRAINT uk_dict_cities_value UNIQUE (value)
+);
+
+CREATE TABLE dict_platforms (
+    id    INTEGER GENERATED BY DEFAULT AS IDENTITY,
+    value VARCHAR(255) NOT NULL,
+    CONSTRAINT dict_platforms_pkey PRIMARY KEY (id),
+    CONSTRAINT uk_dict_platforms_value UNIQUE (value)
+);
+
+CREATE TABLE dict_browsers (
+    id    INTEGER GENERATED BY DEFAULT AS IDENTITY,
+    value VARCHAR(255) NOT NULL,
+    CONSTRAINT dict_browsers_pkey PRIMARY KEY (id),
+    CONSTRAINT uk_dict_browsers_value UNIQUE (value)
+);
+
+ALTER TABLE security_logs
+    ADD COLUMN country_id  INTEGER,
+    ADD COLUMN city_id     INTEGER,
+    ADD COLUMN platform_id INTEGER,
+    ADD COLUMN browser_id  INTEGER;
+
+-- Заполнение словарей значениями из существующих строк (только чтение security_logs)
+INSERT INTO dict_countries (value)
+SELECT DISTINCT left(metadata ->> 'country', 255) FROM security_logs WHERE metadata ->> 'country' IS NOT NULL
+ON CONFLICT (value) DO NOTHING;
+
+INSERT INTO dict_cities (value)
+SELECT DISTINCT left(metadata ->> 'city', 255) FROM security_logs WHERE metadata ->> 'city' IS NOT NULL
+ON CONFLICT (value) DO NOTHING;
+
+INSERT INTO dict_platforms (value)
+SELECT DISTINCT left(metadata ->> 'platform', 255) FROM security_logs WHERE metadata ->> 'platform' IS NOT NULL
+ON CONFLICT (value) DO NOTHING;
+
+INSERT INTO dict_browsers (value)
+SELECT DISTINCT left(metadata ->> 'browser', 255) FROM security_logs WHERE metadata ->> 'browser' IS NOT NULL
+ON CONFLICT (value) DO NOTHING;
+
+-- Перенос значений в колонки *_id и индекс по ним - в V8, пачками по секциям
@@ -0,0 +1,45 @@
+-- Перенос горячих ключей metadata в колонки *_id (V7) для существующих строк.
+-- Одна секция за раз, пачками по диапазону id_int с COMMIT после каждой:
+-- ни одной транзакции на всю таблицу, блокировки строк держатся недолго.
+-- Скрипт выполняется вне транзакции Flyway (V8__backfill_metadata_ids.sql.conf).
+-- Перенесённые строки больше не содержат ключей в metadata, поэтому после
+-- сбоя (flyway repair) повторный запуск продолжает с необработанных.
+
+DO $$
+DECLARE
+    batch CONSTANT bigint := 10000;
+    part  regclass;
+    lo    bigint;
+    hi    bigint;
+BEGIN
+    FOR part IN
+        SELECT i.inhrelid::regclass
+        FROM pg_inherits i
+        WHERE i.inhparent = 'security_logs'::regclass
+        ORDER BY i.inhrelid::regclass::text
+    LOOP
+        EXECUTE format('SELECT min(id_int), max(id_int) FROM %s', part) INTO lo, hi;
+        CONTINUE WHEN lo IS NULL;
+
+        WHILE lo <= hi LOOP
+            EXECUTE format($u$
+                UPDATE %s l SET
+                    country_id  = (SELECT d.id FROM dict_countries d WHERE d.value = left(l.metadata ->> 'country', 255)),
+                    city_id     = (SELECT d.id FROM dict_cities d WHERE d.value = left(l.metadata ->> 'city', 255)),
+                    platform_id = (SELECT d.id FROM dict_platforms d WHERE d.value = left(l.metadata ->> 'platform', 255)),
+                    browser_id  = (SELECT d.id FROM dict_browsers d WHERE d.value = left(l.metadata ->> 'browser', 255)),
+                    metadata    = nullif(l.metadata - 'country' - 'city' - 'platform' - 'browser', '{}'::jsonb)
+                WHERE l.id_int >= $1 AND l.id_int < $2
+                  AND l.metadata ?| ARRAY['country', 'city', 'platform', 'browser']
+            $u$, part) USING lo, lo + batch;
+            COMMIT;
+            lo := lo + batch;
+        END LOOP;
+    END LOOP;
+END
+$$;
+
+-- География детектора: равенство по id вместо выражений над jsonb
+DROP INDEX IF EXISTS idx_security_logs_user_country_city;
+CREATE INDEX idx_security_logs_user_country_city
+    ON security_logs (user_id, country_id, city_id);
@@ -0,0 +1,204 @@
+package com.globus.modul26.integrations;
+
+import com.globus.modul26.model.SecurityLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SIEMExporter против syslog-приёмника в том же процессе (TCP с октетным
+ * счётчиком и UDP).
+ */
+class SIEMExporterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<AutoCloseable> resources = new CopyOnWriteArrayList<>();
+    private SIEMExporter exporter;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (exporter != null) exporter.stop();
+        for (AutoCloseable resource : resources) resource.close();
+    }
+
+    @Test
+    void tcpDeliversOctetCountedFrames() throws Exception {
+        TcpReceiver receiver = new TcpReceiver(new ServerSocket(0, 50, InetAddress.getLoopbackAddress()));
+        exporter = start("tcp", receiver.port());
+
+        for (int i = 1; i <= 100; i++) {
+            exporter.exportInCEF(event(i, i % 10 == 0));
+        }
+
+        for (int i = 1; i <= 100; i++) {
+            String message = receiver.next();
+            assertNotNull(message, "message " + i + " not received");
+            assertTrue(message.startsWith(i % 10 == 0 ? "<84>1 " : "<86>1 "), message);
+            assertTrue(message.contains(" modul26 - CEF - CEF:0|Globus|modul26|"), message);
+            assertTrue(message.contains("userId=" + i + " "), message);
+        }
+        awaitCount("siem.forward.sent", 100);
+    }
+
+    @Test
+    void tcpBuffersWhileCollectorIsDownAndReconnects() throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            port = probe.getLocalPort();
+        }
+        exporter = start("tcp", port);
+        for (int i = 1; i <= 10; i++) {
+            exporter.exportInCEF(event(i, false));
+        }
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertEquals(0, count("siem.forward.sent"));
+
+        TcpReceiver receiver = new TcpReceiver(new ServerSocket(port, 50, InetAddress.getLoopbackAddress()));
+        for (int i = 1; i <= 10; i++) {
+            String message = receiver.next();
+            assertNotNull(message, "buffered message " + i + " not delivered");
+            assertTrue(message.contains("userId=" + i + " "), message);
+        }
+        awaitCount("siem.forward.sent", 10);
+        assertTrue(count("siem.forward.reconnects") >= 1);
+    }
+
+    @Test
+    void udpSendsDatagramPerMessageAndDropsOversized() throws Exception {
+        DatagramSocket socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        socket.setSoTimeout(5000);
+        resources.add(socket);
+        exporter = start("udp", socket.getLocalPort());
+
+        exporter.exportInCEF(event(1, false));
+        SecurityLog oversized = event(2, false);
+        oversized.setDeviceInfo("x".repeat(SIEMExporter.MAX_DATAGRAM_BYTES));
+        exporter.exportInCEF(oversized);
+        exporter.exportInCEF(event(3, true));
+
+        assertTrue(receive(socket).contains("userId=1 "));
+        assertTrue(receive(socket).contains("userId=3 "));
+        awaitCount("siem.forward.sent", 2);
+        assertEquals(1, registry.get("siem.forward.dropped").tag("reason", "oversized").counter().count());
+    }
+
+    @Test
+    void disabledExporterDoesNotForward() {
+        exporter = new SIEMExporter(registry, false, "tcp", "localhost", 1, 10, "modul26",
+                16, 16, 1024, 4096, 100, 10, 100, 1000);
+        exporter.start();
+        exporter.exportInCEF(event(1, true));
+
+        assertFalse(exporter.isRunning());
+        assertEquals(0, count("siem.forward.sent"));
+        assertEquals(0.0, registry.get("siem.forward.queue.depth").gauge().value());
+    }
+
+    private SIEMExporter start(String protocol, int port) {
+        SIEMExporter started = new SIEMExporter(registry, true, protocol, "127.0.0.1", port, 10, "modul26",
+                1024, 16, 4096, 1 << 20, 500, 20, 100, 1000);
+        started.start();
+        return started;
+    }
+
+    private static SecurityLog event(int userId, boolean suspicious) {
+        SecurityLog event = new SecurityLog();
+        event.setId(userId);
+        event.setUserId((long) userId);
+        event.setEventType("LOGIN_ATTEMPT");
+        event.setIpAddress("10.0.0." + userId);
+        event.setDeviceInfo("Mozilla/5.0");
+        event.setIsSuspicious(suspicious);
+        event.setCreatedAt(LocalDateTime.now());
+        return event;
+    }
+
+    private static String receive(DatagramSocket socket) throws IOException {
+        DatagramPacket packet = new DatagramPacket(new byte[SIEMExporter.MAX_DATAGRAM_BYTES], SIEMExporter.MAX_DATAGRAM_BYTES);
+        socket.receive(packet);
+        return new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
+    }
+
+    private double count(String name) {
+        return registry.find(name).counters().stream().mapToDouble(c -> c.count()).sum();
+    }
+
+    private void awaitCount(String name, double expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count(name) < expected && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(expected, count(name));
+    }
+
+    // Приёмник syslog по TCP: разбирает кадры "<длина> <сообщение>" (RFC 6587)
+    private final class TcpReceiver {
+
+        private final ServerSocket server;
+        private final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+
+        TcpReceiver(ServerSocket server) {
+            this.server = server;
+            resources.add(server);
+            Thread acceptor = new Thread(this::accept, "syslog-receiver");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() {
+            return server.getLocalPort();
+        }
+
+        String next() throws InterruptedException {
+            return messages.poll(5, TimeUnit.SECONDS);
+        }
+
+        private void accept() {
+            try (Socket socket = server.accept()) {
+                resources.add(socket);
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                while (true) {
+                    int length = readLength(in);
+                    if (length < 0) return;
+                    byte[] message = new byte[length];
+                    in.readFully(message);
+                    messages.add(new String(message, StandardCharsets.UTF_8));
+                }
+            } catch (IOException e) {
+                // приёмник закрыт
+            }
+        }
+
+        private int readLength(InputStream in) throws IOException {
+            ByteArrayOutputStream digits = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != ' ') {
+                if (b < 0) return -1;
+                digits.write(b);
+            }
+            return Integer.parseInt(digits.toString(StandardCharsets.US_ASCII));
+        }
+    }
+}
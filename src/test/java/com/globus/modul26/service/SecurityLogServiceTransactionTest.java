@@ -0,0 +1,115 @@
+package com.globus.modul26.service;
+
+import com.globus.modul26.dto.SuspiciousEvent;
+import com.globus.modul26.integrations.CefEventWriter;
+import com.globus.modul26.integrations.SIEMExporter;
+import com.globus.modul26.model.SecurityLog;
+import com.globus.modul26.repository.MetadataDictionary;
+import com.globus.modul26.repository.SecurityLogRepository;
+import com.globus.modul26.repository.SuspiciousEventRepository;
+import com.globus.modul26.util.UserAgentClassifier;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * saveLog в настоящей транзакции JpaTransactionManager на Postgres (схема из
+ * Flyway): строка проекции suspicious_events пишется вместе с событием.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({MetadataDictionary.class, SuspiciousEventRepository.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Testcontainers(disabledWithoutDocker = true)
+class SecurityLogServiceTransactionTest {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private SecurityLogRepository repository;
+
+    @Autowired
+    private SuspiciousEventRepository suspiciousEvents;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private SecurityLogServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = new SecurityLogServiceImpl(repository, mock(UserProfileCache.class), mock(EventWindowCounters.class),
+                mock(CefEventWriter.class), mock(SIEMExporter.class), mock(UserAgentClassifier.class),
+                mock(DetectionEngine.class), suspiciousEvents, mock(HotEventWindow.class), registry, 1, 500, 50_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        jdbcTemplate.update("DELETE FROM suspicious_events");
+        jdbcTemplate.update("DELETE FROM security_logs");
+    }
+
+    @Test
+    void suspiciousEventIsProjectedInsideTheSaveTransaction() {
+        SecurityLog saved = new TransactionTemplate(transactionManager).execute(status -> service.saveLog(event(42L)));
+
+        List<SuspiciousEvent> projected = suspiciousEvents.findByUser(42L, 0, 10);
+        assertEquals(1, projected.size());
+        assertEquals(saved.getId(), projected.get(0).logId());
+        assertEquals(List.of("NEW_IP"), projected.get(0).rules());
+        assertEquals(0.0, registry.get("suspicious.events.append.failures").counter().count());
+    }
+
+    @Test
+    void rolledBackSaveLeavesNoProjection() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            service.saveLog(event(43L));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, suspiciousEvents.findByUser(43L, 0, 10).size());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM security_logs WHERE user_id = 43", Integer.class));
+    }
+
+    // Подозрительность задана заранее, детектор не вызывается
+    private static SecurityLog event(Long userId) {
+        SecurityLog log = new SecurityLog();
+        log.setUserId(userId);
+        log.setEventType("LOGIN");
+        log.setIpAddress("10.1.2.3");
+        log.setCountry("RUS");
+        log.setCity("Moscow");
+        log.setCreatedAt(LocalDateTime.now());
+        log.setIsSuspicious(true);
+        log.setFiredRules(List.of("NEW_IP"));
+        return log;
+    }
+}